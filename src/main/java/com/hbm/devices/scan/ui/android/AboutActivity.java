@@ -75,8 +75,6 @@ public class AboutActivity extends AppCompatActivity {
                         "Messtechnik GmbH", new MITLicense()));
                 notices.addNotice(new Notice("LicensesDialog", "https://psdev.de/LicensesDialog", "Philip Schiffer", new
                         ApacheSoftwareLicense20()));
-                notices.addNotice(new Notice("Picasso", "http://square.github.io/picasso", "Square, Inc.", new
-                        ApacheSoftwareLicense20()));
 
                 new LicensesDialog.Builder(view.getContext())
                         .setTitle(R.string.third_party)
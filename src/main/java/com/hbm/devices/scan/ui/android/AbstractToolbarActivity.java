@@ -28,7 +28,9 @@
 
 package com.hbm.devices.scan.ui.android;
 
+import android.os.Bundle;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
@@ -39,6 +41,11 @@ import com.hbm.devices.scan.announce.Device;
 
 abstract class AbstractToolbarActivity extends AppCompatActivity {
 
+    private static final String SAVED_ANNOUNCE = "announce";
+
+    @Nullable
+    private Announce shownAnnounce;
+
     @Override
     public void onBackPressed() {
         super.onBackPressed();
@@ -56,5 +63,29 @@ abstract class AbstractToolbarActivity extends AppCompatActivity {
         setTitle(getDisplayName(announce.getParams().getDevice()));
     }
 
+    /**
+     * Resolves the announce handed over in the intent extra {@code key}. If the process was
+     * restarted in the meantime, the announce saved in {@code savedInstanceState} is used.
+     */
+    @Nullable
+    Announce resolveAnnounce(@NonNull String key, @Nullable Bundle savedInstanceState) {
+        final AnnounceParcel parcel = getIntent().getParcelableExtra(key);
+        Announce announce = parcel == null ? null : parcel.getAnnounce();
+        if (announce == null && savedInstanceState != null) {
+            final AnnounceParcel saved = savedInstanceState.getParcelable(SAVED_ANNOUNCE);
+            announce = saved == null ? null : saved.getAnnounce();
+        }
+        shownAnnounce = announce;
+        return announce;
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (shownAnnounce != null) {
+            outState.putParcelable(SAVED_ANNOUNCE, AnnounceParcel.forSavedState(shownAnnounce));
+        }
+    }
+
     abstract String getDisplayName(Device device);
 }
@@ -0,0 +1,230 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.hbm.devices.scan.announce.Announce;
+import com.hbm.devices.scan.announce.AnnounceDeserializer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Observable;
+import java.util.Observer;
+
+/**
+ * Suppresses parsing of unchanged announces. Devices re-send byte identical announce messages
+ * every few seconds. For such a message the announce parsed last time is forwarded again
+ * without running it through the {@link AnnounceDeserializer}, which is all the
+ * {@link DeviceTracker} needs to refresh the expiration of the device.
+ *
+ * <p>Messages are compared byte by byte. {@link ReceivedMessage}s are looked up directly in
+ * their receive buffer and only decoded if they have to be parsed. Only the last message of
+ * every communication path is remembered; if messages of more than
+ * {@link #MAX_CACHED_MESSAGES} paths piled up, the cache is cleared.</p>
+ */
+final class AnnounceDeduplicator extends Observable implements Observer {
+
+    static final int MAX_CACHED_MESSAGES = 16384;
+    private static final int INITIAL_BUCKETS = 256;
+
+    @NonNull
+    private final AnnounceDeserializer parser;
+    @NonNull
+    private final Map<CommunicationPath, CachedMessage> lastMessages;
+    @NonNull
+    private CachedMessage[] buckets;
+    private ByteBuffer parsingContent;
+    private int parsingHash;
+
+    private volatile long parsedMessages;
+    private volatile long suppressedMessages;
+
+    AnnounceDeduplicator(@NonNull AnnounceDeserializer parser) {
+        super();
+        this.parser = parser;
+        lastMessages = new HashMap<>(INITIAL_BUCKETS);
+        buckets = new CachedMessage[INITIAL_BUCKETS];
+        parser.addObserver(this);
+    }
+
+    @Override
+    public void update(Observable observable, Object arg) {
+        if (arg instanceof Announce) {
+            parsed((Announce) arg);
+        } else if (arg instanceof ReceivedMessage) {
+            received(((ReceivedMessage) arg).content(), arg);
+        } else if (arg instanceof String) {
+            final String message = (String) arg;
+            received(ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)), message);
+        }
+    }
+
+    /**
+     * @return the number of messages run through the {@link AnnounceDeserializer}, i.e. the
+     * number of announce object graphs allocated.
+     */
+    long getParsedMessages() {
+        return parsedMessages;
+    }
+
+    /**
+     * @return the number of messages forwarded without parsing.
+     */
+    long getSuppressedMessages() {
+        return suppressedMessages;
+    }
+
+    private void received(@NonNull ByteBuffer content, @NonNull Object message) {
+        final int hash = hash(content);
+        final CachedMessage cached = find(content, hash);
+        if (cached == null) {
+            parsedMessages++;
+            parsingContent = content;
+            parsingHash = hash;
+            parser.update(this, message.toString());
+            parsingContent = null;
+        } else {
+            suppressedMessages++;
+            forward(cached.announce);
+        }
+    }
+
+    private void parsed(@NonNull Announce announce) {
+        if (parsingContent != null) {
+            final byte[] bytes = new byte[parsingContent.limit()];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = parsingContent.get(i);
+            }
+            final CachedMessage message = new CachedMessage(bytes, parsingHash, announce);
+            final CachedMessage old = lastMessages.put(new CommunicationPath(announce), message);
+            if (old != null) {
+                unlink(old);
+            }
+            if (lastMessages.size() > MAX_CACHED_MESSAGES) {
+                lastMessages.clear();
+                buckets = new CachedMessage[INITIAL_BUCKETS];
+            } else {
+                link(message);
+            }
+        }
+        forward(announce);
+    }
+
+    private void forward(@NonNull Announce announce) {
+        setChanged();
+        notifyObservers(announce);
+    }
+
+    @Nullable
+    private CachedMessage find(@NonNull ByteBuffer content, int hash) {
+        for (CachedMessage message = buckets[hash & (buckets.length - 1)]; message != null; message = message.next) {
+            if (message.hash == hash && message.sameContent(content)) {
+                return message;
+            }
+        }
+        return null;
+    }
+
+    private void link(@NonNull CachedMessage message) {
+        if (lastMessages.size() > buckets.length) {
+            final CachedMessage[] old = buckets;
+            buckets = new CachedMessage[old.length * 2];
+            for (CachedMessage bucket : old) {
+                while (bucket != null) {
+                    final CachedMessage next = bucket.next;
+                    insert(bucket);
+                    bucket = next;
+                }
+            }
+        }
+        insert(message);
+    }
+
+    private void insert(@NonNull CachedMessage message) {
+        final int index = message.hash & (buckets.length - 1);
+        message.next = buckets[index];
+        buckets[index] = message;
+    }
+
+    private void unlink(@NonNull CachedMessage message) {
+        final int index = message.hash & (buckets.length - 1);
+        CachedMessage previous = null;
+        for (CachedMessage current = buckets[index]; current != null; current = current.next) {
+            if (current == message) {
+                if (previous == null) {
+                    buckets[index] = current.next;
+                } else {
+                    previous.next = current.next;
+                }
+                return;
+            }
+            previous = current;
+        }
+    }
+
+    private static int hash(@NonNull ByteBuffer content) {
+        int hash = 0;
+        final int length = content.limit();
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + content.get(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class CachedMessage {
+        @NonNull
+        final byte[] bytes;
+        final int hash;
+        @NonNull
+        final Announce announce;
+        CachedMessage next;
+
+        CachedMessage(@NonNull byte[] bytes, int hash, @NonNull Announce announce) {
+            this.bytes = bytes;
+            this.hash = hash;
+            this.announce = announce;
+        }
+
+        boolean sameContent(@NonNull ByteBuffer content) {
+            if (content.limit() != bytes.length) {
+                return false;
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                if (content.get(i) != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
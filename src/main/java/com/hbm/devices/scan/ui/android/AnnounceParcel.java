@@ -0,0 +1,200 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.hbm.devices.scan.announce.Announce;
+import com.hbm.devices.scan.announce.AnnounceDeserializer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Passes an announce to another activity. Within the process the announce is looked up in the
+ * {@link AnnounceRegistry}, so the parcel only carries the registry key and the announce is
+ * neither serialized nor copied.
+ *
+ * <p>A handle can't be resolved after the process was restarted. Activities therefore save
+ * their announce with {@link #forSavedState(Announce)}, which additionally carries the
+ * announce message, deflated with a dictionary of the usual announce keys.</p>
+ */
+public final class AnnounceParcel implements Parcelable {
+
+    public static final Creator<AnnounceParcel> CREATOR = new Creator<AnnounceParcel>() {
+        @NonNull
+        @Override
+        public AnnounceParcel createFromParcel(@NonNull Parcel in) {
+            final long epoch = in.readLong();
+            final long handle = in.readLong();
+            return new AnnounceParcel(epoch, handle, in.createByteArray());
+        }
+
+        @NonNull
+        @Override
+        public AnnounceParcel[] newArray(int size) {
+            return new AnnounceParcel[size];
+        }
+    };
+
+    private static final byte[] DICTIONARY = ("\"ipv6\":[{\"address\":\"fe80::\",\"prefix\":64}],"
+            + "\"ipv4\":[{\"address\":\"\",\"netmask\":\"255.255.\"}],\"name\":\"eth0\",\"type\":\"ethernet\"}},"
+            + "\"netSettings\":{\"defaultGateway\":{\"ipv4Address\":\"\"},\"interface\":{\"description\":\"\","
+            + "\"expiration\":15,\"router\":{\"uuid\":\"\"},\"isRouter\":true,"
+            + "\"services\":[{\"port\":7411,\"type\":\"daqStream\"},{\"port\":8080,\"type\":\"daqStreamWS\"},"
+            + "{\"port\":5001,\"type\":\"hbmProtocol\"},{\"port\":80,\"type\":\"http\"},"
+            + "{\"port\":11122,\"type\":\"jetd\"},{\"port\":11123,\"type\":\"jetws\"},{\"port\":22,\"type\":\"ssh\"}]}}"
+            + "{\"jsonrpc\":\"2.0\",\"method\":\"announce\",\"params\":{\"apiVersion\":\"1.0\","
+            + "\"device\":{\"familyType\":\"QuantumX\",\"firmwareVersion\":\"\",\"hardwareId\":\"\","
+            + "\"name\":\"\",\"type\":\"\",\"label\":\"\",\"uuid\":\"0009E5\"},").getBytes(StandardCharsets.UTF_8);
+
+    private final long epoch;
+    private final long handle;
+    @Nullable
+    private final byte[] message;
+    @Nullable
+    private Announce announce;
+
+    AnnounceParcel(@NonNull Announce announce) {
+        this(announce, null);
+    }
+
+    private AnnounceParcel(@NonNull Announce announce, @Nullable byte[] message) {
+        this.announce = announce;
+        this.epoch = AnnounceRegistry.EPOCH;
+        this.handle = AnnounceRegistry.register(announce);
+        this.message = message;
+    }
+
+    private AnnounceParcel(long epoch, long handle, @Nullable byte[] message) {
+        this.epoch = epoch;
+        this.handle = handle;
+        this.message = message;
+    }
+
+    /**
+     * @return a parcel that can be resolved even after the process was restarted, for
+     *     saving the instance state of an activity.
+     */
+    @NonNull
+    static AnnounceParcel forSavedState(@NonNull Announce announce) {
+        return new AnnounceParcel(announce, encode(announce.getJSONString()));
+    }
+
+    /**
+     * @return the announce, or null if neither the registry knows it nor the parcel carries a
+     *     valid message.
+     */
+    @Nullable
+    Announce getAnnounce() {
+        if (announce == null) {
+            announce = AnnounceRegistry.lookup(epoch, handle);
+        }
+        if (announce == null && message != null) {
+            final String json = decode(message);
+            if (json != null) {
+                announce = parse(json);
+            }
+        }
+        return announce;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(@NonNull Parcel dest, int flags) {
+        dest.writeLong(epoch);
+        dest.writeLong(handle);
+        dest.writeByteArray(message);
+    }
+
+    @NonNull
+    static byte[] encode(@NonNull String json) {
+        final byte[] input = json.getBytes(StandardCharsets.UTF_8);
+        final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(input);
+            deflater.finish();
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2);
+            final byte[] buffer = new byte[512];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Nullable
+    static String decode(@NonNull byte[] message) {
+        // A raw inflater needs one extra byte of input to finish, see Inflater(boolean).
+        final byte[] input = new byte[message.length + 1];
+        System.arraycopy(message, 0, input, 0, message.length);
+        final Inflater inflater = new Inflater(true);
+        try {
+            inflater.setDictionary(DICTIONARY);
+            inflater.setInput(input);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(message.length * 4);
+            final byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                final int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    return null;
+                }
+                out.write(buffer, 0, count);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            return null;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @Nullable
+    static Announce parse(@NonNull String message) {
+        final Announce[] parsed = new Announce[1];
+        final AnnounceDeserializer parser = new AnnounceDeserializer();
+        parser.addObserver((observable, announce) -> parsed[0] = (Announce) announce);
+        parser.update(null, message);
+        return parsed[0];
+    }
+}
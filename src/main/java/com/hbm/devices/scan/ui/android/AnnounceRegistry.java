@@ -0,0 +1,86 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.hbm.devices.scan.announce.Announce;
+
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide store handing announces from one activity to another by a compact handle,
+ * instead of serializing them into the intent. Only the most recently registered announces
+ * are kept; a handle that is no longer known has to be resolved by other means, see
+ * {@link AnnounceParcel}.
+ *
+ * <p>Handles are counted from 0 in every process, so they are only valid together with the
+ * random {@link #EPOCH} of the process that issued them. A handle restored after the process
+ * was restarted never resolves to another announce.</p>
+ */
+final class AnnounceRegistry {
+
+    static final int MAX_ANNOUNCES = 32;
+    static final long EPOCH = new SecureRandom().nextLong();
+
+    private static final Map<Long, Announce> ANNOUNCES = new LinkedHashMap<Long, Announce>(MAX_ANNOUNCES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Announce> eldest) {
+            return size() > MAX_ANNOUNCES;
+        }
+    };
+    private static long nextHandle;
+
+    private AnnounceRegistry() {
+    }
+
+    /**
+     * @return the handle the announce can be looked up with.
+     */
+    static synchronized long register(@NonNull Announce announce) {
+        final long handle = nextHandle++;
+        ANNOUNCES.put(handle, announce);
+        return handle;
+    }
+
+    /**
+     * @return the announce registered under handle, or null if the handle was issued by
+     *     another process or is not kept anymore.
+     */
+    @Nullable
+    static synchronized Announce lookup(long epoch, long handle) {
+        if (epoch != EPOCH) {
+            return null;
+        }
+        return ANNOUNCES.get(handle);
+    }
+}
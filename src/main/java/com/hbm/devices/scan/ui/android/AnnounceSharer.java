@@ -28,36 +28,63 @@
 
 package com.hbm.devices.scan.ui.android;
 
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.ProgressBar;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.FileProvider;
 import android.widget.Toast;
 
 import com.hbm.devices.scan.announce.Announce;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 class AnnounceSharer {
 
+    private static final String AUTHORITY = "com.hbm.devices.scan.ui.android.fileprovider";
+    /**
+     * Exports finishing faster than this never show the progress dialog.
+     */
+    private static final long PROGRESS_DELAY_MS = 400;
+    /**
+     * Shared by all activities, so repeated shares hit the same export cache.
+     */
+    private static final DeviceZipper ZIPPER = new DeviceZipper();
+
     private final AppCompatActivity activity;
 
     AnnounceSharer(AppCompatActivity activity) {
         this.activity = activity;
     }
 
+    /**
+     * Releases what is kept to speed up the next export.
+     */
+    static void trimMemory() {
+        ZIPPER.trimMemory();
+    }
+
     void handleShare(@NonNull List<Announce> announces) {
-        final Uri uri = DeviceZipper.saveAnnounces(announces, activity);
-        share(uri);
+        new ExportTask(activity, new ArrayList<>(announces)).execute();
     }
 
     void handleShare(Announce announce) {
-        final Uri uri = DeviceZipper.saveAnnounce(announce, activity);
-        share(uri);
+        handleShare(Collections.singletonList(announce));
     }
 
-    private void share(@Nullable Uri uri) {
+    private static void share(@NonNull AppCompatActivity activity, @Nullable Uri uri) {
         if (uri == null) {
             final Toast exitToast = Toast.makeText(activity, R.string.create_devices_file_error, Toast.LENGTH_SHORT);
             exitToast.show();
@@ -70,4 +97,118 @@ class AnnounceSharer {
                     .share_devices)));
         }
     }
+
+    private static final class ExportTask extends AsyncTask<Void, Integer, File>
+            implements DeviceZipper.Progress, DialogInterface.OnCancelListener {
+        @NonNull
+        private final WeakReference<AppCompatActivity> activity;
+        @NonNull
+        private final List<Announce> announces;
+        @NonNull
+        private final File cacheDir;
+        @NonNull
+        private final Handler handler;
+        @NonNull
+        private final Runnable showProgress;
+        private AlertDialog dialog;
+        private ProgressBar bar;
+        private volatile int lastPercent = -1;
+        private String error;
+
+        ExportTask(@NonNull AppCompatActivity activity, @NonNull List<Announce> announces) {
+            super();
+            this.activity = new WeakReference<>(activity);
+            this.announces = announces;
+            this.cacheDir = activity.getCacheDir();
+            this.handler = new Handler(Looper.getMainLooper());
+            this.showProgress = this::showProgress;
+        }
+
+        @Override
+        protected void onPreExecute() {
+            handler.postDelayed(showProgress, PROGRESS_DELAY_MS);
+        }
+
+        @Nullable
+        @Override
+        protected File doInBackground(Void... params) {
+            try {
+                return ZIPPER.export(announces, cacheDir, System.currentTimeMillis(), this);
+            } catch (IOException e) {
+                error = e.toString();
+                return null;
+            }
+        }
+
+        @Override
+        public boolean onProgress(int done, int total) {
+            final int percent = (int) (done * 100L / total);
+            if (percent != lastPercent) {
+                lastPercent = percent;
+                publishProgress(percent);
+            }
+            return !isCancelled();
+        }
+
+        @Override
+        protected void onProgressUpdate(Integer... values) {
+            if (bar != null) {
+                bar.setProgress(values[values.length - 1]);
+            }
+        }
+
+        @Override
+        protected void onPostExecute(@Nullable File file) {
+            dismissProgress();
+            final AppCompatActivity ctx = activity.get();
+            if (ctx == null || ctx.isFinishing()) {
+                return;
+            }
+            if (error != null) {
+                Toast.makeText(ctx, ctx.getString(R.string.could_not_create, error), Toast.LENGTH_SHORT).show();
+                return;
+            }
+            share(ctx, file == null ? null : FileProvider.getUriForFile(ctx, AUTHORITY, file));
+        }
+
+        @Override
+        protected void onCancelled(@Nullable File file) {
+            dismissProgress();
+        }
+
+        @Override
+        public void onCancel(DialogInterface dialogInterface) {
+            cancel(false);
+        }
+
+        private void showProgress() {
+            final AppCompatActivity ctx = activity.get();
+            if (ctx == null || ctx.isFinishing() || getStatus() == Status.FINISHED) {
+                return;
+            }
+            bar = new ProgressBar(ctx, null, android.R.attr.progressBarStyleHorizontal);
+            bar.setMax(100);
+            bar.setProgress(Math.max(lastPercent, 0));
+            final int padding = ctx.getResources().getDimensionPixelSize(R.dimen.export_progress_padding);
+            bar.setPadding(padding, padding, padding, padding);
+            dialog = new AlertDialog.Builder(ctx)
+                    .setTitle(R.string.export_devices)
+                    .setView(bar)
+                    .setNegativeButton(android.R.string.cancel, (d, which) -> d.cancel())
+                    .setOnCancelListener(this)
+                    .show();
+        }
+
+        private void dismissProgress() {
+            handler.removeCallbacks(showProgress);
+            if (dialog != null) {
+                final AppCompatActivity ctx = activity.get();
+                if (ctx != null && !ctx.isFinishing()) {
+                    dialog.dismiss();
+                }
+                dialog = null;
+                bar = null;
+            }
+        }
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+
+import com.hbm.devices.scan.announce.Announce;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Computes the notifications from the displayed list to a new list on a worker and replays
+ * them on the main thread.
+ *
+ * <p>Every submitted list gets a new generation. A result is only applied if no newer list
+ * was submitted in the meantime, so the displayed list is always the list the applied diff
+ * started from. {@link #submit(List)} and {@link #getList()} must be called on the main
+ * thread.</p>
+ */
+final class BackgroundDiffer {
+
+    @NonNull
+    private final Executor worker;
+    @NonNull
+    private final Executor mainThread;
+    @NonNull
+    private final DisplayNotifier notifier;
+    @NonNull
+    private final Runnable applied;
+    @NonNull
+    private List<Announce> list;
+    private long submittedGeneration;
+    private long discardedResults;
+
+    /**
+     * @param worker computes the diffs
+     * @param mainThread replays the notifications
+     * @param notifier receives the notifications, after the new list became visible through
+     *                 {@link #getList()}
+     * @param applied runs after the notifications of a new list were replayed
+     */
+    BackgroundDiffer(@NonNull Executor worker, @NonNull Executor mainThread, @NonNull DisplayNotifier notifier,
+                     @NonNull Runnable applied) {
+        this.worker = worker;
+        this.mainThread = mainThread;
+        this.notifier = notifier;
+        this.applied = applied;
+        this.list = Collections.emptyList();
+    }
+
+    void submit(@NonNull List<Announce> newList) {
+        final long generation = ++submittedGeneration;
+        final List<Announce> base = list;
+        final List<Announce> target = Collections.unmodifiableList(new ArrayList<>(newList));
+        worker.execute(() -> {
+            final DiffScript script = new DiffScript();
+            new DisplayUpdateEventGenerator(script).compareLists(new ArrayList<>(base), target);
+            mainThread.execute(() -> apply(generation, target, script));
+        });
+    }
+
+    /**
+     * @return the displayed list, which can't be modified.
+     */
+    @NonNull
+    List<Announce> getList() {
+        return list;
+    }
+
+    long getDiscardedResults() {
+        return discardedResults;
+    }
+
+    private void apply(long generation, @NonNull List<Announce> target, @NonNull DiffScript script) {
+        if (generation != submittedGeneration) {
+            discardedResults++;
+            return;
+        }
+        list = target;
+        script.replay(notifier);
+        applied.run();
+    }
+}
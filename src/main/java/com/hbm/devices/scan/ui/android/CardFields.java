@@ -0,0 +1,77 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+
+import com.hbm.devices.scan.announce.Announce;
+import com.hbm.devices.scan.announce.Device;
+
+import java.util.Objects;
+
+/**
+ * Bits for the fields a device card displays, passed as RecyclerView payload so a changed
+ * device only updates the views of the fields that changed. A change of none of them is
+ * still notified, the card then only takes the new announce.
+ */
+final class CardFields {
+
+    static final int NONE = 0;
+    static final int NAME = 1;
+    static final int TYPE = 1 << 1;
+    static final int UUID = 1 << 2;
+    static final int PHOTO = 1 << 3;
+    static final int CONFIRMATION = 1 << 4;
+    static final int DISPLAYED = NAME | TYPE | UUID | PHOTO;
+
+    private CardFields() {
+    }
+
+    /**
+     * @return the bits of the fields displayed differently for newer than for older.
+     */
+    static int changed(@NonNull Announce older, @NonNull Announce newer) {
+        final Device olderDevice = older.getParams().getDevice();
+        final Device newerDevice = newer.getParams().getDevice();
+        int fields = NONE;
+        if (!Objects.equals(olderDevice.getName(), newerDevice.getName())) {
+            fields |= NAME;
+        }
+        if (!Objects.equals(olderDevice.getType(), newerDevice.getType())) {
+            fields |= TYPE | PHOTO;
+        }
+        if (!Objects.equals(olderDevice.getUuid(), newerDevice.getUuid())) {
+            fields |= UUID;
+        }
+        if (!Objects.equals(olderDevice.getLabel(), newerDevice.getLabel())) {
+            fields |= PHOTO;
+        }
+        return fields;
+    }
+}
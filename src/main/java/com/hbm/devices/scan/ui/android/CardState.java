@@ -0,0 +1,145 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+
+import com.hbm.devices.scan.announce.Announce;
+import com.hbm.devices.scan.announce.Device;
+
+/**
+ * What a device card shows: the display strings and the photo resource. Binding an announce
+ * reports which of them differ from before, so the card only touches those views. Binding
+ * doesn't allocate, the fallback for missing texts is resolved once per card.
+ */
+final class CardState {
+
+    @NonNull
+    private final String unknown;
+    @NonNull
+    private final DeviceImageResolver images;
+    @NonNull
+    private String name;
+    @NonNull
+    private String type;
+    @NonNull
+    private String uuid;
+    private int imageResource;
+    private boolean bound;
+
+    /**
+     * @param unknown shown for a missing name or type
+     * @param images finds the photo of the device
+     */
+    CardState(@NonNull String unknown, @NonNull DeviceImageResolver images) {
+        this.unknown = unknown;
+        this.images = images;
+        this.name = unknown;
+        this.type = unknown;
+        this.uuid = "";
+        this.imageResource = 0;
+    }
+
+    /**
+     * @return the {@link CardFields} bits of the views that have to show something else.
+     */
+    int bind(@NonNull Announce announce) {
+        return bind(announce, CardFields.DISPLAYED);
+    }
+
+    /**
+     * Binds a new announce of the device already bound, only looking at the fields that
+     * changed since.
+     *
+     * @param candidates the {@link CardFields} bits of the fields that may have changed.
+     * @return the {@link CardFields} bits of the views that have to show something else.
+     */
+    int bind(@NonNull Announce announce, int candidates) {
+        final Device device = announce.getParams().getDevice();
+        int fields = CardFields.NONE;
+        if (!bound) {
+            candidates = CardFields.DISPLAYED;
+            fields = CardFields.DISPLAYED;
+            bound = true;
+        }
+        if ((candidates & CardFields.NAME) != 0) {
+            final String newName = orUnknown(device.getName());
+            if (!newName.equals(name)) {
+                name = newName;
+                fields |= CardFields.NAME;
+            }
+        }
+        if ((candidates & CardFields.TYPE) != 0) {
+            final String newType = orUnknown(device.getType());
+            if (!newType.equals(type)) {
+                type = newType;
+                fields |= CardFields.TYPE;
+            }
+        }
+        if ((candidates & CardFields.UUID) != 0) {
+            final String newUuid = device.getUuid() == null ? "" : device.getUuid();
+            if (!newUuid.equals(uuid)) {
+                uuid = newUuid;
+                fields |= CardFields.UUID;
+            }
+        }
+        if ((candidates & CardFields.PHOTO) != 0) {
+            final int newImageResource = images.resolve(device);
+            if (newImageResource != imageResource) {
+                imageResource = newImageResource;
+                fields |= CardFields.PHOTO;
+            }
+        }
+        return fields;
+    }
+
+    @NonNull
+    String getName() {
+        return name;
+    }
+
+    @NonNull
+    String getType() {
+        return type;
+    }
+
+    @NonNull
+    String getUuid() {
+        return uuid;
+    }
+
+    int getImageResource() {
+        return imageResource;
+    }
+
+    @NonNull
+    private String orUnknown(String text) {
+        return text == null || text.isEmpty() ? unknown : text;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+
+import com.hbm.devices.scan.announce.Announce;
+
+import java.util.Objects;
+
+/**
+ * Hash key for the communication path of an announce. Two keys are equal if their announces
+ * were sent by the same device over the same path, see {@link Announce#sameCommunicationPath(Announce)}.
+ */
+final class CommunicationPath {
+
+    @NonNull
+    private final Announce announce;
+    private final int hash;
+
+    CommunicationPath(@NonNull Announce announce) {
+        this.announce = announce;
+        hash = hash(announce);
+    }
+
+    /**
+     * @return the hash code a path created for the announce has.
+     */
+    static int hash(@NonNull Announce announce) {
+        final String uuid = announce.getParams().getDevice().getUuid();
+        final String interfaceName = announce.getParams().getNetSettings().getInterface().getName();
+        return 31 * Objects.hashCode(uuid) + Objects.hashCode(interfaceName);
+    }
+
+    @NonNull
+    Announce getAnnounce() {
+        return announce;
+    }
+
+    /**
+     * Compares with the path of an announce without creating a path for it.
+     *
+     * @param announceHash the {@link #hash(Announce)} of the announce.
+     */
+    boolean isPathOf(@NonNull Announce other, int announceHash) {
+        return hash == announceHash && announce.sameCommunicationPath(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CommunicationPath)) {
+            return false;
+        }
+        final CommunicationPath other = (CommunicationPath) o;
+        return other.isPathOf(announce, hash);
+    }
+}
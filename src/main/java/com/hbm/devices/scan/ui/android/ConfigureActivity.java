@@ -73,7 +73,11 @@ public final class ConfigureActivity extends AbstractToolbarActivity {
             this.configThread = new ConfigServiceThread();
             configThread.start();
 
-            final Announce announce = (Announce) getIntent().getSerializableExtra(DeviceDetailsActivity.DETAILS);
+            final Announce announce = resolveAnnounce(DeviceDetailsActivity.DETAILS, savedInstanceState);
+            if (announce == null) {
+                finish();
+                return;
+            }
             initToolbar(announce);
 
             final EditText ipv4Address = findViewById(R.id.configure_ip_address_edit);
@@ -0,0 +1,98 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+/**
+ * Combines CRC-32 checksums of adjacent byte ranges, like zlib's {@code crc32_combine}.
+ *
+ * <p>The CRC of a concatenation {@code A B} is the CRC of {@code A} advanced over as many
+ * zero bytes as {@code B} has, xor the CRC of {@code B}. Advancing over {@code 2^k} zero bytes
+ * is a linear operator on the 32 CRC bits; the operators for all powers of two are
+ * precomputed, so combining costs one 32 bit matrix multiplication per set bit of the
+ * length.</p>
+ */
+final class Crc32 {
+
+    private static final int POLYNOMIAL = 0xedb88320;
+    private static final int[][] ZERO_BYTES = new int[Long.SIZE - 1][];
+
+    static {
+        // Operator for one zero bit, squared three times gives one zero byte.
+        int[] operator = new int[Integer.SIZE];
+        operator[0] = POLYNOMIAL;
+        for (int n = 1; n < Integer.SIZE; n++) {
+            operator[n] = 1 << (n - 1);
+        }
+        for (int i = 0; i < 3; i++) {
+            operator = square(operator);
+        }
+        ZERO_BYTES[0] = operator;
+        for (int k = 1; k < ZERO_BYTES.length; k++) {
+            ZERO_BYTES[k] = square(ZERO_BYTES[k - 1]);
+        }
+    }
+
+    private Crc32() {}
+
+    /**
+     * @param first CRC-32 of the first range
+     * @param second CRC-32 of the second range
+     * @param secondLength length of the second range in bytes
+     * @return CRC-32 of both ranges in sequence
+     */
+    static int combine(int first, int second, long secondLength) {
+        int crc = first;
+        long length = secondLength;
+        for (int k = 0; length > 0; k++, length >>>= 1) {
+            if ((length & 1) != 0) {
+                crc = times(ZERO_BYTES[k], crc);
+            }
+        }
+        return crc ^ second;
+    }
+
+    private static int times(int[] matrix, int vector) {
+        int sum = 0;
+        int rest = vector;
+        for (int i = 0; rest != 0; i++, rest >>>= 1) {
+            if ((rest & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static int[] square(int[] matrix) {
+        final int[] result = new int[Integer.SIZE];
+        for (int n = 0; n < Integer.SIZE; n++) {
+            result[n] = times(matrix, matrix[n]);
+        }
+        return result;
+    }
+}
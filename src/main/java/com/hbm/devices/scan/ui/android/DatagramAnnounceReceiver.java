@@ -0,0 +1,216 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import com.hbm.devices.scan.AbstractMessageReceiver;
+import com.hbm.devices.scan.ScanInterfaces;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives announce datagrams from all interfaces reported by {@link ScanInterfaces} on a
+ * single thread. One non-blocking {@link DatagramChannel} joins the announce group on every
+ * interface and is multiplexed by a {@link Selector}. Whenever the selector has been idle for
+ * {@link #RESCAN_INTERVAL_MS} or that much time has passed since the last scan, the interfaces
+ * are scanned again and the group is joined on new interfaces and dropped on vanished ones,
+ * see {@link InterfaceMemberships}.
+ *
+ * <p>Datagrams are read into a small pool of direct buffers and handed to the observers as
+ * {@link ReceivedMessage}, so no String is created for a datagram unless it really has to be
+ * parsed.</p>
+ */
+@RequiresApi(Build.VERSION_CODES.N)
+final class DatagramAnnounceReceiver extends AbstractMessageReceiver {
+
+    /*
+     * Multicast group and port of the HBM announce protocol, see ScanConstants in devscan.
+     */
+    static final String ANNOUNCE_ADDRESS = "239.255.77.76";
+    static final int ANNOUNCE_PORT = 31416;
+
+    static final long RESCAN_INTERVAL_MS = 5000;
+
+    private static final int MAX_DATAGRAM_SIZE = 65536;
+
+    @NonNull
+    private final Selector selector;
+    @NonNull
+    private final DatagramChannel channel;
+    @NonNull
+    private final InetAddress group;
+    @NonNull
+    private final BlockingQueue<ReceivedMessage> freeMessages;
+    @NonNull
+    private final InterfaceMemberships memberships;
+
+    /**
+     * @param numberOfBuffers the number of receive buffers. Observers may retain up to
+     *                        {@code numberOfBuffers - 1} messages without stalling the receiver.
+     */
+    DatagramAnnounceReceiver(int numberOfBuffers) throws IOException {
+        super();
+        freeMessages = new ArrayBlockingQueue<>(numberOfBuffers);
+        for (int i = 0; i < numberOfBuffers; i++) {
+            freeMessages.add(new ReceivedMessage(MAX_DATAGRAM_SIZE, freeMessages));
+        }
+        memberships = new InterfaceMemberships();
+        group = InetAddress.getByName(ANNOUNCE_ADDRESS);
+
+        selector = Selector.open();
+        channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        try {
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.bind(new InetSocketAddress(ANNOUNCE_PORT));
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ);
+            updateInterfaces();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            long nextScan = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RESCAN_INTERVAL_MS);
+            while (selector.isOpen()) {
+                if (selector.select(RESCAN_INTERVAL_MS) > 0) {
+                    selector.selectedKeys().clear();
+                    receiveAll();
+                }
+                final long now = System.nanoTime();
+                if (now - nextScan >= 0) {
+                    updateInterfaces();
+                    nextScan = now + TimeUnit.MILLISECONDS.toNanos(RESCAN_INTERVAL_MS);
+                }
+            }
+        } catch (ClosedChannelException | ClosedSelectorException | InterruptedException e) {
+            // receiver was closed or the scan thread got interrupted, just stop receiving.
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+            // the channel is closed below anyway.
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // nothing left to do if closing the channel fails.
+        }
+    }
+
+    /**
+     * @return the group memberships and packet counts per interface.
+     */
+    @NonNull
+    InterfaceMemberships getMemberships() {
+        return memberships;
+    }
+
+    private void receiveAll() throws IOException, InterruptedException {
+        while (true) {
+            final ReceivedMessage message = freeMessages.take();
+            try {
+                // The channel still allocates the sender address for every datagram.
+                final SocketAddress sender = channel.receive(message.prepareReceive());
+                if (sender == null) {
+                    return;
+                }
+                message.received();
+                memberships.count(((InetSocketAddress) sender).getAddress());
+                setChanged();
+                notifyObservers(message);
+            } finally {
+                message.release();
+            }
+        }
+    }
+
+    /*
+     * A failure to list the interfaces keeps the current memberships until the next scan.
+     */
+    private void updateInterfaces() {
+        final Map<String, NetworkInterface> interfaces = new HashMap<>();
+        final List<InterfaceMemberships.Interface> descriptions = new ArrayList<>();
+        try {
+            for (final NetworkInterface networkInterface : new ScanInterfaces().getInterfaces()) {
+                interfaces.put(networkInterface.getName(), networkInterface);
+                descriptions.add(InterfaceMemberships.Interface.of(networkInterface));
+            }
+        } catch (SocketException e) {
+            return;
+        }
+        memberships.update(descriptions, name -> {
+            final MembershipKey key = channel.join(group, interfaces.get(name));
+            return new InterfaceMemberships.Key() {
+                @Override
+                public boolean isValid() {
+                    return key.isValid();
+                }
+
+                @Override
+                public void drop() {
+                    key.drop();
+                }
+            };
+        });
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.hbm.devices.scan.announce.Announce;
+import com.hbm.devices.scan.announce.AnnounceDeserializer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Persists the last known devices across launches, so the device list can be shown right
+ * away instead of staying empty until every device announced itself again.
+ *
+ * <p>The cache file holds a magic number, a format version and the number of devices,
+ * followed by the length-prefixed announce message of every device. Messages are deflated
+ * with the preset dictionary of {@link AnnounceParcel#encode(String)}, which shrinks a typical
+ * announce to a fifth. The file is memory-mapped for loading.</p>
+ *
+ * <p>{@link #saveInBackground(Collection)} writes the cache on a thread of its own. A
+ * {@link #load()} waits for a save still running, so a restarted scan sees the devices of the
+ * scan stopped right before. {@link #close()} ends the writer thread.</p>
+ */
+final class DeviceCache {
+
+    static final String FILE_NAME = "devices.cache";
+
+    private static final int MAGIC = 0x48424d44;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 12;
+
+    @NonNull
+    private final File file;
+    @NonNull
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "device cache");
+        thread.setDaemon(true);
+        return thread;
+    });
+    @Nullable
+    private Future<?> pendingSave;
+
+    DeviceCache(@NonNull File directory) {
+        file = new File(directory, FILE_NAME);
+    }
+
+    /**
+     * @return the cached announces. A missing or damaged cache file yields the announces that
+     * could be read before the damage, possibly none.
+     */
+    @NonNull
+    List<Announce> load() {
+        final List<Announce> announces = new ArrayList<>();
+        if (!awaitPendingSave() || !file.isFile()) {
+            return announces;
+        }
+        final AnnounceDeserializer parser = new AnnounceDeserializer();
+        parser.addObserver((observable, announce) -> announces.add((Announce) announce));
+        try (FileInputStream stream = new FileInputStream(file);
+             FileChannel channel = stream.getChannel()) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return announces;
+            }
+            final int count = buffer.getInt();
+            for (int i = 0; i < count && buffer.remaining() >= 4; i++) {
+                final int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    break;
+                }
+                final byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                final String message = AnnounceParcel.decode(bytes);
+                if (message == null) {
+                    break;
+                }
+                parser.update(null, message);
+            }
+        } catch (IOException e) {
+            // a cache that can't be read is as good as no cache.
+        }
+        return announces;
+    }
+
+    /**
+     * Replaces the cache file on the writer thread. A failing write keeps the previous cache.
+     *
+     * @param announces must not be modified afterwards.
+     */
+    synchronized void saveInBackground(@NonNull final Collection<Announce> announces) {
+        if (writer.isShutdown()) {
+            return;
+        }
+        pendingSave = writer.submit(() -> {
+            try {
+                save(announces);
+            } catch (IOException e) {
+                // the next scan just starts with the previous cache.
+            }
+        });
+    }
+
+    /**
+     * Lets the writer thread finish a save still running and ends it. Later saves in the
+     * background are dropped, {@link #load()} and {@link #save(Collection)} keep working.
+     */
+    synchronized void close() {
+        writer.shutdown();
+    }
+
+    /**
+     * Replaces the cache file. The new file is written aside and renamed, so a failing write
+     * leaves the previous cache intact.
+     */
+    void save(@NonNull Collection<Announce> announces) throws IOException {
+        final File tmpFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(announces.size());
+            for (final Announce announce : announces) {
+                final byte[] message = AnnounceParcel.encode(announce.getJSONString());
+                out.writeInt(message.length);
+                out.write(message);
+            }
+        }
+        if (!tmpFile.renameTo(file)) {
+            throw new IOException("could not rename " + tmpFile + " to " + file);
+        }
+    }
+
+    /*
+     * @return false if the calling thread was interrupted while waiting.
+     */
+    private boolean awaitPendingSave() {
+        final Future<?> save;
+        synchronized (this) {
+            save = pendingSave;
+        }
+        if (save == null) {
+            return true;
+        }
+        try {
+            save.get();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return true;
+        }
+    }
+}
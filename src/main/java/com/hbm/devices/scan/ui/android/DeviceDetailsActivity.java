@@ -62,7 +62,11 @@ public final class DeviceDetailsActivity extends AbstractToolbarActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.device_details);
 
-        announce = (Announce) getIntent().getSerializableExtra(DeviceViewHolder.DETAILS);
+        announce = resolveAnnounce(DeviceViewHolder.DETAILS, savedInstanceState);
+        if (announce == null) {
+            finish();
+            return;
+        }
         initToolbar(announce);
 
         final DetailsFiller filler = new DetailsFiller(announce, this);
@@ -97,7 +101,7 @@ public final class DeviceDetailsActivity extends AbstractToolbarActivity {
                 return true;
             case R.id.action_setup:
                 final Intent intent = new Intent(this, ConfigureActivity.class);
-                intent.putExtra(DETAILS, announce);
+                intent.putExtra(DETAILS, new AnnounceParcel(announce));
                 ActivityCompat.startActivity(this, intent, null);
                 overridePendingTransition(R.anim.activity_in, R.anim.activity_out);
                 return true;
@@ -0,0 +1,284 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import android.content.Context;
+import android.content.res.Resources;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.hbm.devices.scan.announce.Device;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the photo of a device by its label or type. The keys are read from the asset
+ * {@value #ASSET} and compiled into a prefix trie over their upper-cased letters and digits.
+ * A label or type resolves to the drawable of the longest key it starts with. Results, misses
+ * included, are memorized, so every label and type is only resolved once.
+ */
+final class DeviceImageResolver {
+
+    static final String ASSET = "device_images.txt";
+
+    private static final String COMMENT = "#";
+    private static final char SEPARATOR = '=';
+    private static final int NO_RESOURCE = 0;
+    private static final int MAX_MEMO_SIZE = 1024;
+
+    @Nullable
+    private static DeviceImageResolver instance;
+
+    private final int fallback;
+    /*
+     * The nodes are numbered breadth first with the children of a node in character order.
+     * Node n has the edges firstEdge[n] to firstEdge[n + 1] - 1, and edge e leads to node e + 1.
+     */
+    @NonNull
+    private final int[] firstEdge;
+    @NonNull
+    private final char[] edgeCharacters;
+    @NonNull
+    private final int[] resources;
+    @NonNull
+    private final Map<String, Integer> memo;
+
+    interface ResourceIds {
+        /**
+         * @return the id of the drawable, or 0 if there is none with that name.
+         */
+        int getDrawable(@NonNull String name);
+    }
+
+    private DeviceImageResolver(int fallback, @NonNull int[] firstEdge, @NonNull char[] edgeCharacters,
+                                @NonNull int[] resources) {
+        this.fallback = fallback;
+        this.firstEdge = firstEdge;
+        this.edgeCharacters = edgeCharacters;
+        this.resources = resources;
+        this.memo = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return the resolver of the application, loaded from the asset on first use. If the asset
+     * can't be read all devices get the fallback photo.
+     */
+    @NonNull
+    static synchronized DeviceImageResolver get(@NonNull Context context) {
+        if (instance == null) {
+            final Context application = context.getApplicationContext();
+            final Resources res = application.getResources();
+            final String packageName = application.getPackageName();
+            DeviceImageResolver resolver;
+            try (final Reader reader = new InputStreamReader(application.getAssets().open(ASSET),
+                    StandardCharsets.UTF_8)) {
+                resolver = load(reader, name -> res.getIdentifier(name, "drawable", packageName),
+                        R.drawable.ic_no_device);
+            } catch (IOException e) {
+                resolver = load(new ArrayList<String>(), new ArrayList<Integer>(), R.drawable.ic_no_device);
+            }
+            instance = resolver;
+        }
+        return instance;
+    }
+
+    /**
+     * Reads lines of the form {@code key = drawable}. Empty lines and lines starting with
+     * {@value #COMMENT} are skipped.
+     *
+     * @param fallback the drawable of devices no key matches
+     * @throws IOException if a line is malformed or names an unknown drawable
+     */
+    @NonNull
+    static DeviceImageResolver load(@NonNull Reader reader, @NonNull ResourceIds ids, int fallback)
+            throws IOException {
+        final BufferedReader lines = new BufferedReader(reader);
+        final List<String> keys = new ArrayList<>();
+        final List<Integer> drawables = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith(COMMENT)) {
+                continue;
+            }
+            final int separator = line.indexOf(SEPARATOR);
+            final String key = separator < 0 ? "" : normalize(line.substring(0, separator));
+            final String name = separator < 0 ? "" : line.substring(separator + 1).trim();
+            final int drawable = name.isEmpty() ? NO_RESOURCE : ids.getDrawable(name);
+            if (key.isEmpty() || drawable == NO_RESOURCE) {
+                throw new IOException("Invalid device image in line " + lineNumber + ": " + line);
+            }
+            keys.add(key);
+            drawables.add(drawable);
+        }
+        return load(keys, drawables, fallback);
+    }
+
+    @NonNull
+    private static DeviceImageResolver load(@NonNull List<String> keys, @NonNull List<Integer> drawables,
+                                            int fallback) {
+        final TrieNode root = new TrieNode();
+        for (int i = 0; i < keys.size(); i++) {
+            TrieNode node = root;
+            for (final char c : keys.get(i).toCharArray()) {
+                TrieNode child = node.children.get(c);
+                if (child == null) {
+                    child = new TrieNode();
+                    node.children.put(c, child);
+                }
+                node = child;
+            }
+            node.resource = drawables.get(i);
+        }
+
+        final List<TrieNode> nodes = new ArrayList<>();
+        nodes.add(root);
+        for (int i = 0; i < nodes.size(); i++) {
+            nodes.addAll(nodes.get(i).children.values());
+        }
+        final int[] firstEdge = new int[nodes.size() + 1];
+        final char[] edgeCharacters = new char[nodes.size() - 1];
+        final int[] resources = new int[nodes.size()];
+        int edge = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            final TrieNode node = nodes.get(i);
+            firstEdge[i] = edge;
+            resources[i] = node.resource;
+            for (final Character c : node.children.keySet()) {
+                edgeCharacters[edge++] = c;
+            }
+        }
+        firstEdge[nodes.size()] = edge;
+        return new DeviceImageResolver(fallback, firstEdge, edgeCharacters, resources);
+    }
+
+    /**
+     * @return the photo for the label of the device, for its type if the label matches no key,
+     * or the fallback photo.
+     */
+    int resolve(@NonNull Device device) {
+        int resource = resolve(device.getLabel());
+        if (resource == NO_RESOURCE) {
+            resource = resolve(device.getType());
+        }
+        return resource == NO_RESOURCE ? fallback : resource;
+    }
+
+    /**
+     * @return the drawable of the longest key text starts with, or 0 if there is none.
+     */
+    int resolve(@Nullable String text) {
+        if (text == null || text.isEmpty()) {
+            return NO_RESOURCE;
+        }
+        final Integer memorized = memo.get(text);
+        if (memorized != null) {
+            return memorized;
+        }
+        final int resource = lookup(text);
+        if (memo.size() >= MAX_MEMO_SIZE) {
+            memo.clear();
+        }
+        memo.put(text, resource);
+        return resource;
+    }
+
+    int getMemoSize() {
+        return memo.size();
+    }
+
+    private int lookup(@NonNull String text) {
+        int node = 0;
+        int resource = resources[node];
+        for (int i = 0; i < text.length(); i++) {
+            final char c = Character.toUpperCase(text.charAt(i));
+            if (!isKeyCharacter(c)) {
+                continue;
+            }
+            node = child(node, c);
+            if (node < 0) {
+                break;
+            }
+            if (resources[node] != NO_RESOURCE) {
+                resource = resources[node];
+            }
+        }
+        return resource;
+    }
+
+    private int child(int node, char c) {
+        int low = firstEdge[node];
+        int high = firstEdge[node + 1] - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final char edge = edgeCharacters[middle];
+            if (edge < c) {
+                low = middle + 1;
+            } else if (edge > c) {
+                high = middle - 1;
+            } else {
+                return middle + 1;
+            }
+        }
+        return -1;
+    }
+
+    @NonNull
+    private static String normalize(@NonNull String key) {
+        final StringBuilder normalized = new StringBuilder(key.length());
+        for (int i = 0; i < key.length(); i++) {
+            final char c = Character.toUpperCase(key.charAt(i));
+            if (isKeyCharacter(c)) {
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static boolean isKeyCharacter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    private static final class TrieNode {
+        @NonNull
+        final Map<Character, TrieNode> children = new TreeMap<>();
+        int resource = NO_RESOURCE;
+    }
+}
@@ -44,12 +44,10 @@ import android.widget.Filter;
 import android.widget.Toast;
 
 import com.hbm.devices.scan.announce.Announce;
-import com.hbm.devices.scan.announce.Device;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static android.net.wifi.WifiManager.WIFI_MODE_FULL_HIGH_PERF;
@@ -61,10 +59,12 @@ import static android.net.wifi.WifiManager.WIFI_MODE_FULL_HIGH_PERF;
 public final class DeviceListFragment extends Fragment implements OnSharedPreferenceChangeListener {
 
     @NonNull protected final AtomicReference<ModuleListAdapter> adapter = new AtomicReference<>();
-    @Nullable protected AtomicReference<List<Announce>> collectedAnnounces;
+    @Nullable protected AtomicReference<DeviceSnapshot> collectedAnnounces;
     private boolean paused;
     private String filterString;
-    private ScanThread scanThread;
+    private ScanPipeline scanPipeline;
+    private DeviceCache deviceCache;
+    private boolean usingFakeMessages;
     private DeviceFilter deviceFilter;
     private WifiLock wifiLock;
     private MulticastLock mcLock;
@@ -87,9 +87,10 @@ public final class DeviceListFragment extends Fragment implements OnSharedPrefer
 
         collectedAnnounces = new AtomicReference<>();
         deviceFilter = new DeviceFilter();
+        deviceCache = new DeviceCache(getActivity().getFilesDir());
 
         final SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(getActivity());
-        startScanThread(sharedPreferences);
+        startScanPipeline(sharedPreferences);
         sharedPreferences.registerOnSharedPreferenceChangeListener(this);
     }
 
@@ -130,7 +131,8 @@ public final class DeviceListFragment extends Fragment implements OnSharedPrefer
     @Override
     public void onDestroy() {
         adapter.set(null);
-        stopScanThread();
+        stopScanPipeline();
+        deviceCache.close();
         mcLock.release();
         wifiLock.release();
         super.onDestroy();
@@ -150,8 +152,8 @@ public final class DeviceListFragment extends Fragment implements OnSharedPrefer
         }
 
         if (key.equals(prefUseFakeMessages) || key.equals(prefFakeMessageType)) {
-            stopScanThread();
-            startScanThread(sharedPreferences);
+            stopScanPipeline();
+            startScanPipeline(sharedPreferences);
         }
     }
 
@@ -171,7 +173,32 @@ public final class DeviceListFragment extends Fragment implements OnSharedPrefer
         updateList();
     }
 
-    void notify(List<Announce> announces) {
+    /**
+     * @return false if the device of the announce was restored from the device cache and has
+     * not been announced since.
+     */
+    boolean isConfirmed(@NonNull Announce announce) {
+        return collectedAnnounces.get().isConfirmed(announce);
+    }
+
+    /**
+     * @return all devices of the last snapshot, including the ones the filter hides.
+     */
+    @NonNull
+    DeviceSnapshot getCollectedAnnounces() {
+        final DeviceSnapshot announces = collectedAnnounces.get();
+        return announces == null ? DeviceSnapshot.EMPTY : announces;
+    }
+
+    /**
+     * @return a summary of the metrics of the running scan, or null if no scan is running.
+     */
+    @Nullable
+    String getScanStatistics() {
+        return scanPipeline == null ? null : scanPipeline.getStatistics();
+    }
+
+    void notify(DeviceSnapshot announces) {
         collectedAnnounces.set(announces);
         if (!paused) {
             updateList();
@@ -189,7 +216,7 @@ public final class DeviceListFragment extends Fragment implements OnSharedPrefer
         }
     }
 
-    private void startScanThread(SharedPreferences sharedPreferences) {
+    private void startScanPipeline(SharedPreferences sharedPreferences) {
         final boolean useFakeMessages = sharedPreferences.getBoolean(getString(R.string.pref_use_fake_messages), false);
         final String fakeMessageType = sharedPreferences.getString(getString(R.string.pref_fake_message_type),
                 getString(R.string.default_fake_type));
@@ -201,10 +228,13 @@ public final class DeviceListFragment extends Fragment implements OnSharedPrefer
             messageType = FakeMessageType.CONSTANT_NUMBER_OF_DEVICES;
         }
 
-        notify(new ArrayList<>());
+        notify(DeviceSnapshot.EMPTY);
+        usingFakeMessages = useFakeMessages;
+        scanPipeline = null;
         try {
-            scanThread = new ScanThread(this, useFakeMessages, messageType);
-            scanThread.start();
+            scanPipeline = new ScanPipeline(this, useFakeMessages, messageType,
+                    useFakeMessages ? null : deviceCache);
+            scanPipeline.start();
         } catch (IOException e) {
             final ScanActivity activity = (ScanActivity) getActivity();
             final Toast failureToast = Toast.makeText(activity,
@@ -213,19 +243,20 @@ public final class DeviceListFragment extends Fragment implements OnSharedPrefer
         }
     }
 
-    private void stopScanThread() {
-        scanThread.finish();
-        try {
-            scanThread.join();
-        } catch (InterruptedException e) {
-            final ScanActivity activity = (ScanActivity) getActivity();
-            final Toast failureToast = Toast.makeText(activity,
-                    activity.getString(R.string.interrupted_join), Toast.LENGTH_SHORT);
-            failureToast.show();
+    private void stopScanPipeline() {
+        if (scanPipeline == null) {
+            return;
+        }
+        scanPipeline.close();
+        if (!usingFakeMessages) {
+            deviceCache.saveInBackground(collectedAnnounces.get());
         }
     }
 
     class DeviceFilter extends Filter {
+        @NonNull
+        private final DeviceSearchIndex searchIndex = new DeviceSearchIndex();
+
         @NonNull
         @Override
         protected FilterResults performFiltering(@Nullable final CharSequence constraint) {
@@ -234,16 +265,10 @@ public final class DeviceListFragment extends Fragment implements OnSharedPrefer
             if (constraint != null) {
                 filterConstraint = constraint;
             }
-            final String upperCaseConstraint = filterConstraint.toString().toUpperCase(Locale.US);
+            final DeviceQuery query = DeviceQuery.parse(filterConstraint.toString());
             final List<Announce> filteredAnnounces = new ArrayList<>();
-            final List<Announce> announceList = collectedAnnounces.get();
-            for (final Announce announce : announceList) {
-                if (displayNameMatches(announce, upperCaseConstraint) ||
-                    moduleTypeMatches(announce, upperCaseConstraint) ||
-                    uuidMatches(announce, upperCaseConstraint)) {
-                    filteredAnnounces.add(announce);
-                }
-            }
+            searchIndex.update(collectedAnnounces.get());
+            searchIndex.search(query, filteredAnnounces);
             filteredResults.values = filteredAnnounces;
             filteredResults.count = filteredAnnounces.size();
             return filteredResults;
@@ -258,32 +283,6 @@ public final class DeviceListFragment extends Fragment implements OnSharedPrefer
                 a.notifyList(filteredAnnounces);
             }
         }
-
-        private boolean displayNameMatches(final Announce announce, @NonNull final CharSequence constraint) {
-            final Device device = announce.getParams().getDevice();
-            final String name = getDisplayName(device).toUpperCase(Locale.US);
-            return name.contains(constraint);
-        }
-
-        private boolean moduleTypeMatches(final Announce announce, @NonNull final CharSequence constraint) {
-            final Device device = announce.getParams().getDevice();
-            final String type = device.getType().toUpperCase(Locale.US);
-            return type.contains(constraint);
-        }
-
-        private boolean uuidMatches(final Announce announce, @NonNull final CharSequence constraint) {
-            final Device device = announce.getParams().getDevice();
-            final String uuid = device.getUuid().toUpperCase(Locale.US);
-            return uuid.contains(constraint);
-        }
-
-        private String getDisplayName(Device device) {
-            String displayName = device.getName();
-            if (displayName == null || displayName.length() == 0) {
-                displayName = device.getUuid();
-            }
-            return displayName;
-        }
     }
 }
 
@@ -0,0 +1,191 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Decoded device photos, scaled to the width of the card photo, kept in a LRU cache bounded
+ * by a byte budget. Photos are decoded on a background thread, so binding a card never decodes
+ * on the main thread. All methods have to be called on the main thread.
+ */
+final class DevicePhotoCache {
+
+    private static final int MAX_BUDGET_BYTES = 8 * 1024 * 1024;
+    private static final int MEMORY_FRACTION = 16;
+
+    @Nullable
+    private static DevicePhotoCache instance;
+
+    @NonNull
+    private final Resources resources;
+    private final int width;
+    @NonNull
+    private final LruCache<Long, Bitmap> bitmaps;
+    @NonNull
+    private final Map<Long, List<ImageView>> waiting;
+    @NonNull
+    private final Executor decoder;
+    @NonNull
+    private final Handler mainHandler;
+
+    private DevicePhotoCache(@NonNull Context context) {
+        resources = context.getResources();
+        width = resources.getDimensionPixelSize(R.dimen.device_photo_width);
+        final int budget = (int) Math.min(MAX_BUDGET_BYTES, Runtime.getRuntime().maxMemory() / MEMORY_FRACTION);
+        bitmaps = new LruCache<Long, Bitmap>(budget) {
+            @Override
+            protected int sizeOf(Long key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+        waiting = new HashMap<>();
+        decoder = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "device photo decode");
+            thread.setDaemon(true);
+            return thread;
+        });
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    @NonNull
+    static DevicePhotoCache get(@NonNull Context context) {
+        if (instance == null) {
+            instance = new DevicePhotoCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Shows the photo in view, right away if it is decoded already and once it is decoded
+     * otherwise. A view loading another photo before is not set to this one.
+     */
+    void load(int resource, @NonNull ImageView view) {
+        final Long key = key(resource);
+        view.setTag(R.id.device_photo, key);
+        final Bitmap bitmap = bitmaps.get(key);
+        if (bitmap != null) {
+            view.setImageBitmap(bitmap);
+            return;
+        }
+        view.setImageDrawable(null);
+        decode(resource, key).add(view);
+    }
+
+    /**
+     * Decodes the photos in the background unless they are cached already.
+     */
+    void prefetch(@NonNull Iterable<Integer> resources) {
+        for (final Integer resource : resources) {
+            final Long key = key(resource);
+            if (bitmaps.get(key) == null) {
+                decode(resource, key);
+            }
+        }
+    }
+
+    @NonNull
+    private List<ImageView> decode(int resource, @NonNull Long key) {
+        List<ImageView> views = waiting.get(key);
+        if (views == null) {
+            views = new ArrayList<>();
+            waiting.put(key, views);
+            decoder.execute(() -> {
+                final Bitmap bitmap = decodeScaled(resource);
+                mainHandler.post(() -> deliver(key, bitmap));
+            });
+        }
+        return views;
+    }
+
+    private void deliver(@NonNull Long key, @Nullable Bitmap bitmap) {
+        final List<ImageView> views = waiting.remove(key);
+        if (bitmap == null) {
+            return;
+        }
+        bitmaps.put(key, bitmap);
+        for (final ImageView view : views) {
+            if (key.equals(view.getTag(R.id.device_photo))) {
+                view.setImageBitmap(bitmap);
+            }
+        }
+    }
+
+    /*
+     * Decodes with the largest power of two sample size that keeps the photo at least as
+     * wide as the card photo, then scales to exactly that width.
+     */
+    @Nullable
+    private Bitmap decodeScaled(int resource) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(resources, resource, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= width) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        final Bitmap decoded = BitmapFactory.decodeResource(resources, resource, options);
+        if (decoded == null || decoded.getWidth() <= width) {
+            return decoded;
+        }
+        final int height = Math.max(1, decoded.getHeight() * width / decoded.getWidth());
+        final Bitmap scaled = Bitmap.createScaledBitmap(decoded, width, height, true);
+        if (scaled != decoded) {
+            decoded.recycle();
+        }
+        return scaled;
+    }
+
+    @NonNull
+    private Long key(int resource) {
+        return ((long) resource << Integer.SIZE) | width;
+    }
+}
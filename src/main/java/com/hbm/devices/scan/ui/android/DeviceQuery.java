@@ -0,0 +1,570 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.hbm.devices.scan.announce.Device;
+import com.hbm.devices.scan.announce.IPEntry;
+import com.hbm.devices.scan.announce.Interface;
+import com.hbm.devices.scan.announce.NetSettings;
+import com.hbm.devices.scan.announce.ServiceEntry;
+import com.hbm.devices.scan.ui.android.DeviceSnapshot.Entry;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A device filter query, parsed once into a tree of terms all of which a device has to match.
+ *
+ * <p>Terms are separated by white space:</p>
+ * <ul>
+ *     <li>{@code type:MX840*}, {@code name:...}, {@code uuid:...} match the field exactly,
+ *     {@code *} matches any text.</li>
+ *     <li>{@code fw:<1.5} compares the firmware version with {@code <}, {@code <=}, {@code >}
+ *     or {@code >=}. {@code fw:1.5} and {@code fw:=1.5} match versions starting with the given
+ *     components.</li>
+ *     <li>{@code ip:172.19.0.0/16} matches devices with an IPv4 address in the subnet.</li>
+ *     <li>{@code service:daq} matches devices with a service whose type contains the text.</li>
+ *     <li>{@code router} and {@code is:router} match devices that are routers, {@code !router}
+ *     and {@code !is:router} devices that are not.</li>
+ *     <li>Any other word matches if the display name, type or UUID contains it.</li>
+ *     <li>A leading {@code !} negates a term.</li>
+ * </ul>
+ *
+ * <p>A query without fields, flags and negations is plain text, white space included, and matches
+ * like the filter always did. A term that can't be parsed is taken as plain text, so is a
+ * {@code !} without a term.</p>
+ */
+final class DeviceQuery {
+
+    private static final String TYPE = "TYPE:";
+    private static final String NAME = "NAME:";
+    private static final String UUID = "UUID:";
+    private static final String FIRMWARE = "FW:";
+    private static final String IP = "IP:";
+    private static final String SERVICE = "SERVICE:";
+    private static final String IS = "IS:";
+    private static final String ROUTER = "ROUTER";
+    private static final String NEGATION = "!";
+    private static final String[] FIELDS = {TYPE, NAME, UUID, FIRMWARE, IP, SERVICE, IS};
+    private static final int IPV4_BITS = 32;
+
+    @NonNull
+    private final String text;
+    private final boolean plainText;
+    @NonNull
+    private final List<Term> terms;
+    @Nullable
+    private final String indexedText;
+
+    private DeviceQuery(@NonNull String text, boolean plainText, @NonNull List<Term> terms,
+                        @Nullable String indexedText) {
+        this.text = text;
+        this.plainText = plainText;
+        this.terms = terms;
+        this.indexedText = indexedText;
+    }
+
+    @NonNull
+    static DeviceQuery parse(@NonNull String query) {
+        final String folded = query.toUpperCase(Locale.US);
+        final String[] words = folded.trim().split("\\s+");
+        if (!isStructured(words)) {
+            return new DeviceQuery(folded, true, new ArrayList<Term>(), folded);
+        }
+
+        final List<Term> terms = new ArrayList<>(words.length);
+        String indexedText = null;
+        for (final String word : words) {
+            final boolean negated = isNegation(word);
+            final Term term = parseTerm(negated ? word.substring(NEGATION.length()) : word);
+            terms.add(negated ? new Not(term) : term);
+            if (!negated) {
+                final String literal = term.getIndexedText();
+                if (literal != null && (indexedText == null || literal.length() > indexedText.length())) {
+                    indexedText = literal;
+                }
+            }
+        }
+        return new DeviceQuery(folded, false, terms, indexedText);
+    }
+
+    /**
+     * @return true if the query is plain text, see {@link #getText()}.
+     */
+    boolean isPlainText() {
+        return plainText;
+    }
+
+    /**
+     * @return the query upper-cased with {@link Locale#US}.
+     */
+    @NonNull
+    String getText() {
+        return text;
+    }
+
+    /**
+     * @return a text the display name, type or UUID of every matching device contains, to
+     * narrow down the devices through the search index, or null if there is none.
+     */
+    @Nullable
+    String getIndexedText() {
+        return indexedText;
+    }
+
+    boolean matches(@NonNull Entry entry) {
+        if (plainText) {
+            return entry.text.matches(text);
+        }
+        for (final Term term : terms) {
+            if (!term.matches(entry)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isStructured(@NonNull String[] words) {
+        for (final String word : words) {
+            if (isNegation(word) || fieldOf(word) != null || ROUTER.equals(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isNegation(@NonNull String word) {
+        return word.length() > NEGATION.length() && word.startsWith(NEGATION);
+    }
+
+    @Nullable
+    private static String fieldOf(@NonNull String word) {
+        for (final String field : FIELDS) {
+            if (word.startsWith(field)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    @NonNull
+    private static Term parseTerm(@NonNull String word) {
+        if (ROUTER.equals(word)) {
+            return new RouterTerm();
+        }
+        final String field = fieldOf(word);
+        if (field == null) {
+            return new TextTerm(word);
+        }
+        final String value = word.substring(field.length());
+        Term term = null;
+        switch (field) {
+            case TYPE:
+            case NAME:
+            case UUID:
+                term = new PatternTerm(field, value);
+                break;
+            case FIRMWARE:
+                term = FirmwareTerm.parse(value);
+                break;
+            case IP:
+                term = SubnetTerm.parse(value);
+                break;
+            case IS:
+                term = ROUTER.equals(value) ? new RouterTerm() : null;
+                break;
+            default:
+                term = new ServiceTerm(value);
+                break;
+        }
+        return term == null ? new TextTerm(word) : term;
+    }
+
+    @NonNull
+    private static String nonNull(@Nullable String string) {
+        return string == null ? "" : string;
+    }
+
+    private interface Term {
+        boolean matches(@NonNull Entry entry);
+
+        @Nullable
+        String getIndexedText();
+    }
+
+    private static final class Not implements Term {
+        @NonNull
+        private final Term term;
+
+        Not(@NonNull Term term) {
+            this.term = term;
+        }
+
+        @Override
+        public boolean matches(@NonNull Entry entry) {
+            return !term.matches(entry);
+        }
+
+        @Nullable
+        @Override
+        public String getIndexedText() {
+            return null;
+        }
+    }
+
+    private static final class TextTerm implements Term {
+        @NonNull
+        private final String text;
+
+        TextTerm(@NonNull String text) {
+            this.text = text;
+        }
+
+        @Override
+        public boolean matches(@NonNull Entry entry) {
+            return entry.text.matches(text);
+        }
+
+        @NonNull
+        @Override
+        public String getIndexedText() {
+            return text;
+        }
+    }
+
+    /**
+     * Matches a field against a pattern whose {@code *} match any text.
+     */
+    private static final class PatternTerm implements Term {
+        @NonNull
+        private final String field;
+        @NonNull
+        private final String[] segments;
+
+        PatternTerm(@NonNull String field, @NonNull String pattern) {
+            this.field = field;
+            this.segments = pattern.split("\\*", -1);
+        }
+
+        @Override
+        public boolean matches(@NonNull Entry entry) {
+            final String value;
+            if (TYPE.equals(field)) {
+                value = entry.text.getFoldedType();
+            } else if (NAME.equals(field)) {
+                value = entry.text.getFoldedDisplayName();
+            } else {
+                value = entry.text.getFoldedUuid();
+            }
+            if (segments.length == 1) {
+                return value.equals(segments[0]);
+            }
+            final String first = segments[0];
+            final String last = segments[segments.length - 1];
+            if (!value.startsWith(first) || value.length() < first.length() + last.length()) {
+                return false;
+            }
+            int from = first.length();
+            for (int i = 1; i < segments.length - 1; i++) {
+                final int found = value.indexOf(segments[i], from);
+                if (found < 0) {
+                    return false;
+                }
+                from = found + segments[i].length();
+            }
+            return from <= value.length() - last.length() && value.endsWith(last);
+        }
+
+        @Nullable
+        @Override
+        public String getIndexedText() {
+            String longest = null;
+            for (final String segment : segments) {
+                if (!segment.isEmpty() && (longest == null || segment.length() > longest.length())) {
+                    longest = segment;
+                }
+            }
+            return longest;
+        }
+    }
+
+    private static final class FirmwareTerm implements Term {
+        private static final int PREFIX = 0;
+        private static final int LESS = 1;
+        private static final int LESS_OR_EQUAL = 2;
+        private static final int GREATER = 3;
+        private static final int GREATER_OR_EQUAL = 4;
+        private static final String[] OPERATORS = {"=", "<", "<=", ">", ">="};
+
+        private final int operator;
+        @NonNull
+        private final int[] version;
+
+        private FirmwareTerm(int operator, @NonNull int[] version) {
+            this.operator = operator;
+            this.version = version;
+        }
+
+        @Nullable
+        static FirmwareTerm parse(@NonNull String value) {
+            int operator = PREFIX;
+            int length = 0;
+            for (int i = 0; i < OPERATORS.length; i++) {
+                if (value.startsWith(OPERATORS[i]) && OPERATORS[i].length() > length) {
+                    operator = i;
+                    length = OPERATORS[i].length();
+                }
+            }
+            final String version = value.substring(length);
+            if (!version.matches("\\d+(\\.\\d+)*")) {
+                return null;
+            }
+            return new FirmwareTerm(operator, components(version));
+        }
+
+        @Override
+        public boolean matches(@NonNull Entry entry) {
+            final Device device = entry.announce.getParams().getDevice();
+            final String deviceVersion = nonNull(device.getFirmwareVersion());
+            if (operator == PREFIX) {
+                return startsWith(deviceVersion, version);
+            }
+            final int comparison = compare(deviceVersion, version);
+            switch (operator) {
+                case LESS:
+                    return comparison < 0;
+                case LESS_OR_EQUAL:
+                    return comparison <= 0;
+                case GREATER:
+                    return comparison > 0;
+                default:
+                    return comparison >= 0;
+            }
+        }
+
+        @Nullable
+        @Override
+        public String getIndexedText() {
+            return null;
+        }
+
+        /*
+         * Splits the version of the query, once when the query is parsed.
+         */
+        @NonNull
+        private static int[] components(@NonNull String version) {
+            final String[] parts = version.split("\\.");
+            final int[] components = new int[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                components[i] = componentAt(parts[i], 0);
+            }
+            return components;
+        }
+
+        /*
+         * The device version is walked in place instead of being split, this runs for every
+         * device on each keystroke. Missing components count as 0.
+         */
+        private static int compare(@NonNull String deviceVersion, @NonNull int[] components) {
+            int position = 0;
+            for (int i = 0; i < components.length || position >= 0; i++) {
+                final int a = position < 0 ? 0 : componentAt(deviceVersion, position);
+                final int b = i < components.length ? components[i] : 0;
+                if (a != b) {
+                    return a < b ? -1 : 1;
+                }
+                if (position >= 0) {
+                    position = nextComponent(deviceVersion, position);
+                }
+            }
+            return 0;
+        }
+
+        private static boolean startsWith(@NonNull String deviceVersion, @NonNull int[] components) {
+            int position = 0;
+            for (final int component : components) {
+                if (position < 0 || componentAt(deviceVersion, position) != component) {
+                    return false;
+                }
+                position = nextComponent(deviceVersion, position);
+            }
+            return true;
+        }
+
+        /*
+         * Components without leading digits count as 0.
+         */
+        private static int componentAt(@NonNull String version, int position) {
+            int component = 0;
+            for (int c = position; c < version.length() && Character.isDigit(version.charAt(c)); c++) {
+                component = component * 10 + Character.digit(version.charAt(c), 10);
+            }
+            return component;
+        }
+
+        /*
+         * @return the start of the component after the one at position, -1 if there is none.
+         */
+        private static int nextComponent(@NonNull String version, int position) {
+            final int dot = version.indexOf('.', position);
+            return dot < 0 ? -1 : dot + 1;
+        }
+    }
+
+    private static final class SubnetTerm implements Term {
+        private final int network;
+        private final int mask;
+
+        private SubnetTerm(int network, int mask) {
+            this.network = network & mask;
+            this.mask = mask;
+        }
+
+        /*
+         * Parses the address by hand, InetAddress.getByName would resolve host names.
+         */
+        @Nullable
+        static SubnetTerm parse(@NonNull String value) {
+            final int slash = value.indexOf('/');
+            final String address = slash < 0 ? value : value.substring(0, slash);
+            if (!address.matches("\\d{1,3}(\\.\\d{1,3}){3}")) {
+                return null;
+            }
+            int network = 0;
+            for (final String part : address.split("\\.")) {
+                final int octet = Integer.parseInt(part);
+                if (octet > 255) {
+                    return null;
+                }
+                network = (network << 8) | octet;
+            }
+            int prefix = IPV4_BITS;
+            if (slash >= 0) {
+                final String bits = value.substring(slash + 1);
+                if (!bits.matches("\\d{1,2}")) {
+                    return null;
+                }
+                prefix = Integer.parseInt(bits);
+                if (prefix > IPV4_BITS) {
+                    return null;
+                }
+            }
+            return new SubnetTerm(network, prefix == 0 ? 0 : -1 << (IPV4_BITS - prefix));
+        }
+
+        @Override
+        public boolean matches(@NonNull Entry entry) {
+            final NetSettings settings = entry.announce.getParams().getNetSettings();
+            final Interface anInterface = settings == null ? null : settings.getInterface();
+            final List<IPEntry> entries = anInterface == null ? null : anInterface.getIPList();
+            if (entries == null) {
+                return false;
+            }
+            for (final IPEntry ipEntry : entries) {
+                final InetAddress address = ipEntry.getAddress();
+                if (address instanceof Inet4Address) {
+                    final byte[] bytes = address.getAddress();
+                    final int value = ((bytes[0] & 0xff) << 24) | ((bytes[1] & 0xff) << 16)
+                            | ((bytes[2] & 0xff) << 8) | (bytes[3] & 0xff);
+                    if ((value & mask) == network) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        @Nullable
+        @Override
+        public String getIndexedText() {
+            return null;
+        }
+    }
+
+    private static final class ServiceTerm implements Term {
+        @NonNull
+        private final String type;
+
+        ServiceTerm(@NonNull String type) {
+            this.type = type.toUpperCase(Locale.US);
+        }
+
+        @Override
+        public boolean matches(@NonNull Entry entry) {
+            final List<ServiceEntry> services = entry.announce.getParams().getServices();
+            if (services == null) {
+                return false;
+            }
+            for (final ServiceEntry service : services) {
+                if (containsIgnoreCase(nonNull(service.getType()), type)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Nullable
+        @Override
+        public String getIndexedText() {
+            return null;
+        }
+
+        /*
+         * Compares in place, the services of every device would be upper-cased on every
+         * keystroke otherwise.
+         */
+        private static boolean containsIgnoreCase(@NonNull String text, @NonNull String foldedPart) {
+            for (int i = 0; i <= text.length() - foldedPart.length(); i++) {
+                if (text.regionMatches(true, i, foldedPart, 0, foldedPart.length())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class RouterTerm implements Term {
+        @Override
+        public boolean matches(@NonNull Entry entry) {
+            return entry.announce.getParams().getDevice().isRouter();
+        }
+
+        @Nullable
+        @Override
+        public String getIndexedText() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.hbm.devices.scan.announce.Announce;
+import com.hbm.devices.scan.ui.android.DeviceSnapshot.Entry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trigram index over the folded texts of the devices in a {@link DeviceSnapshot}.
+ *
+ * <p>The index follows the snapshots incrementally: only entries added, removed or replaced
+ * since the last snapshot are reindexed, and a replaced entry only if its {@link DeviceText}
+ * changed. A query of at least three characters only looks at the devices posted under its
+ * rarest trigram. Shorter queries, and queries whose rarest trigram is shared by more than a
+ * quarter of the devices, match many devices anyway and scan the snapshot in order instead.</p>
+ *
+ * <p>Not thread safe, the device filter uses it from its worker thread only.</p>
+ */
+final class DeviceSearchIndex {
+
+    static final int GRAM_LENGTH = 3;
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int SCAN_FRACTION = 4;
+    private static final Comparator<Entry> SNAPSHOT_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry first, Entry second) {
+            return first.slot < second.slot ? -1 : (first.slot == second.slot ? 0 : 1);
+        }
+    };
+
+    @NonNull
+    private final Map<CommunicationPath, Document> documents = new HashMap<>();
+    @NonNull
+    private final Map<Long, Posting> postings = new HashMap<>();
+    @NonNull
+    private final Updater updater = new Updater();
+    @NonNull
+    private Document[] documentsById = new Document[INITIAL_CAPACITY];
+    @NonNull
+    private int[] freeIds = new int[INITIAL_CAPACITY];
+    private int freeIdCount;
+    private int nextId;
+    @NonNull
+    private DeviceSnapshot snapshot = DeviceSnapshot.EMPTY;
+    @Nullable
+    private String lastQuery;
+    @NonNull
+    private List<Entry> lastResult = Collections.emptyList();
+    private long refinedSearches;
+    private long comparedDevices;
+
+    /**
+     * Brings the index up to date with snapshot.
+     */
+    void update(@NonNull DeviceSnapshot newSnapshot) {
+        if (newSnapshot != snapshot) {
+            newSnapshot.diff(snapshot, updater);
+            snapshot = newSnapshot;
+            lastQuery = null;
+        }
+    }
+
+    /**
+     * Adds the announces of all devices whose display name, type or UUID contains the query to
+     * matches, in snapshot order.
+     *
+     * <p>If the snapshot did not change since the last search and the query contains the last
+     * query, as it does while the user types, only the devices of the last result can match
+     * and only those are checked.</p>
+     *
+     * @param foldedQuery the query, upper-cased with {@link java.util.Locale#US}.
+     */
+    void search(@NonNull String foldedQuery, @NonNull List<Announce> matches) {
+        final List<Entry> result;
+        if (lastQuery != null && foldedQuery.contains(lastQuery)) {
+            result = refine(foldedQuery);
+            refinedSearches++;
+        } else {
+            result = lookup(foldedQuery);
+        }
+        lastQuery = foldedQuery;
+        lastResult = result;
+        for (final Entry entry : result) {
+            matches.add(entry.announce);
+        }
+    }
+
+    /**
+     * Adds the announces of all devices matching the query to matches, in snapshot order. If
+     * the query requires a text, only the devices containing it are evaluated.
+     */
+    void search(@NonNull DeviceQuery query, @NonNull List<Announce> matches) {
+        if (query.isPlainText()) {
+            search(query.getText(), matches);
+            return;
+        }
+        lastQuery = null;
+        final String indexedText = query.getIndexedText();
+        final List<Entry> candidates = lookup(indexedText == null ? "" : indexedText);
+        for (final Entry entry : candidates) {
+            comparedDevices++;
+            if (query.matches(entry)) {
+                matches.add(entry.announce);
+            }
+        }
+    }
+
+    @NonNull
+    private List<Entry> refine(@NonNull String foldedQuery) {
+        final List<Entry> found = new ArrayList<>(lastResult.size());
+        for (final Entry entry : lastResult) {
+            comparedDevices++;
+            if (entry.text.matches(foldedQuery)) {
+                found.add(entry);
+            }
+        }
+        return found;
+    }
+
+    @NonNull
+    private List<Entry> lookup(@NonNull String foldedQuery) {
+        if (foldedQuery.length() < GRAM_LENGTH) {
+            return scan(foldedQuery);
+        }
+
+        Posting rarest = null;
+        for (int i = 0; i + GRAM_LENGTH <= foldedQuery.length(); i++) {
+            final Posting posting = postings.get(gram(foldedQuery, i));
+            if (posting == null) {
+                return Collections.emptyList();
+            }
+            if (rarest == null || posting.size < rarest.size) {
+                rarest = posting;
+            }
+        }
+        if (rarest.size * SCAN_FRACTION > documents.size()) {
+            return scan(foldedQuery);
+        }
+        final List<Entry> found = new ArrayList<>(rarest.size);
+        for (int i = 0; i < rarest.size; i++) {
+            final Entry entry = documentsById[rarest.ids[i]].entry;
+            comparedDevices++;
+            if (entry.text.matches(foldedQuery)) {
+                found.add(entry);
+            }
+        }
+        Collections.sort(found, SNAPSHOT_ORDER);
+        return found;
+    }
+
+    @NonNull
+    private List<Entry> scan(@NonNull String foldedQuery) {
+        final List<Entry> found = new ArrayList<>();
+        for (final Entry entry : snapshot.entries()) {
+            comparedDevices++;
+            if (entry.text.matches(foldedQuery)) {
+                found.add(entry);
+            }
+        }
+        return found;
+    }
+
+    long getRefinedSearches() {
+        return refinedSearches;
+    }
+
+    /**
+     * @return the number of devices compared with a query so far, the work a search does
+     * besides looking up trigrams.
+     */
+    long getComparedDevices() {
+        return comparedDevices;
+    }
+
+    int size() {
+        return documents.size();
+    }
+
+    int getGramCount() {
+        return postings.size();
+    }
+
+    private void index(@NonNull DeviceText text, int id) {
+        index(text.getFoldedDisplayName(), id);
+        index(text.getFoldedType(), id);
+        index(text.getFoldedUuid(), id);
+    }
+
+    private void index(@NonNull String field, int id) {
+        for (int i = 0; i + GRAM_LENGTH <= field.length(); i++) {
+            final Long gram = gram(field, i);
+            Posting posting = postings.get(gram);
+            if (posting == null) {
+                posting = new Posting();
+                postings.put(gram, posting);
+            }
+            posting.add(id);
+        }
+    }
+
+    private void unindex(@NonNull DeviceText text, int id) {
+        unindex(text.getFoldedDisplayName(), id);
+        unindex(text.getFoldedType(), id);
+        unindex(text.getFoldedUuid(), id);
+    }
+
+    private void unindex(@NonNull String field, int id) {
+        for (int i = 0; i + GRAM_LENGTH <= field.length(); i++) {
+            final Long gram = gram(field, i);
+            final Posting posting = postings.get(gram);
+            if (posting != null && posting.remove(id) && posting.size == 0) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    private int allocateId() {
+        if (freeIdCount > 0) {
+            return freeIds[--freeIdCount];
+        }
+        if (nextId == documentsById.length) {
+            documentsById = Arrays.copyOf(documentsById, nextId * 2);
+        }
+        return nextId++;
+    }
+
+    private void releaseId(int id) {
+        documentsById[id] = null;
+        if (freeIdCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIdCount * 2);
+        }
+        freeIds[freeIdCount++] = id;
+    }
+
+    private static long gram(@NonNull String text, int index) {
+        return ((long) text.charAt(index) << 32) | ((long) text.charAt(index + 1) << 16) | text.charAt(index + 2);
+    }
+
+    private final class Updater implements PathTrie.DiffHandler {
+        @Override
+        public void added(@NonNull Entry entry) {
+            final Document document = new Document(allocateId(), entry);
+            documents.put(entry.path, document);
+            documentsById[document.id] = document;
+            index(entry.text, document.id);
+        }
+
+        @Override
+        public void removed(@NonNull Entry entry) {
+            final Document document = documents.remove(entry.path);
+            unindex(document.entry.text, document.id);
+            releaseId(document.id);
+        }
+
+        @Override
+        public void replaced(@NonNull Entry older, @NonNull Entry newer) {
+            final Document document = documents.get(newer.path);
+            if (document.entry.text != newer.text) {
+                unindex(document.entry.text, document.id);
+                index(newer.text, document.id);
+            }
+            document.entry = newer;
+        }
+    }
+
+    private static final class Document {
+        final int id;
+        @NonNull
+        Entry entry;
+
+        Document(int id, @NonNull Entry entry) {
+            this.id = id;
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * Sorted ids of the documents containing a trigram.
+     */
+    private static final class Posting {
+        @NonNull
+        int[] ids = new int[2];
+        int size;
+
+        void add(int id) {
+            final int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                return;
+            }
+            final int insertion = -index - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, insertion, ids, insertion + 1, size - insertion);
+            ids[insertion] = id;
+            size++;
+        }
+
+        boolean remove(int id) {
+            final int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.hbm.devices.scan.announce.Announce;
+
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable snapshot of the announced devices. Adding, updating or removing a device creates
+ * a new snapshot in O(log n) that shares almost all of its structure with the old one, so
+ * snapshots can be handed to other threads without copying.
+ *
+ * <p>Devices are iterated in the order they were first announced. Removed devices leave a hole
+ * in the slot vector, which gets compacted once there are more holes than devices.</p>
+ *
+ * <p>Every device carries its {@link DeviceText}, computed once per announce. Devices restored
+ * from the {@link DeviceCache} are unconfirmed until they are announced again.</p>
+ */
+final class DeviceSnapshot extends AbstractCollection<Announce> {
+
+    private static final int MIN_COMPACTION_SLOTS = 64;
+
+    static final DeviceSnapshot EMPTY = new DeviceSnapshot(PersistentVector.empty(), PathTrie.EMPTY, 0);
+
+    @NonNull
+    private final PersistentVector<Entry> slots;
+    @NonNull
+    private final PathTrie index;
+    private final int size;
+
+    private DeviceSnapshot(@NonNull PersistentVector<Entry> slots, @NonNull PathTrie index, int size) {
+        this.slots = slots;
+        this.index = index;
+        this.size = size;
+    }
+
+    /**
+     * @param pool the pool the {@link DeviceText} of the announce is interned with.
+     */
+    @NonNull
+    DeviceSnapshot put(@NonNull Announce announce, @NonNull StringPool pool) {
+        return put(announce, true, pool);
+    }
+
+    /**
+     * Adds a device that is not confirmed by a live announce yet.
+     */
+    @NonNull
+    DeviceSnapshot putUnconfirmed(@NonNull Announce announce, @NonNull StringPool pool) {
+        return put(announce, false, pool);
+    }
+
+    @NonNull
+    private DeviceSnapshot put(@NonNull Announce announce, boolean confirmed, @NonNull StringPool pool) {
+        final CommunicationPath path = new CommunicationPath(announce);
+        final Entry old = index.get(path);
+        if (old == null) {
+            final Entry entry = new Entry(path, announce, DeviceText.of(announce, null, pool), confirmed, slots.size());
+            return new DeviceSnapshot(slots.append(entry), index.put(entry), size + 1);
+        }
+        final Entry entry = new Entry(path, announce, DeviceText.of(announce, old.text, pool), confirmed, old.slot);
+        return new DeviceSnapshot(slots.set(old.slot, entry), index.put(entry), size);
+    }
+
+    @NonNull
+    DeviceSnapshot remove(@NonNull Announce announce) {
+        return remove(new CommunicationPath(announce));
+    }
+
+    @NonNull
+    DeviceSnapshot remove(@NonNull CommunicationPath path) {
+        final Entry old = index.get(path);
+        if (old == null) {
+            return this;
+        }
+        final DeviceSnapshot snapshot = new DeviceSnapshot(slots.set(old.slot, null), index.remove(path), size - 1);
+        return snapshot.needsCompaction() ? snapshot.compact() : snapshot;
+    }
+
+    /**
+     * @return the entry of the device on the given path, or null if there is none.
+     */
+    @Nullable
+    Entry getEntry(@NonNull CommunicationPath path) {
+        return index.get(path);
+    }
+
+    /**
+     * @return false if the device of the announce was restored from the cache and not
+     * announced since.
+     */
+    boolean isConfirmed(@NonNull Announce announce) {
+        final Entry entry = index.get(announce);
+        return entry == null || entry.confirmed;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @NonNull
+    @Override
+    public Iterator<Announce> iterator() {
+        final Iterator<Entry> entries = new EntryIterator();
+        return new Iterator<Announce>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public Announce next() {
+                return entries.next().announce;
+            }
+        };
+    }
+
+    /**
+     * @return the entries of the snapshot, in the same order as {@link #iterator()}.
+     */
+    @NonNull
+    Iterable<Entry> entries() {
+        return EntryIterator::new;
+    }
+
+    private boolean needsCompaction() {
+        final int slotCount = slots.size();
+        return slotCount >= MIN_COMPACTION_SLOTS && slotCount - size > size;
+    }
+
+    /**
+     * Reports the entries added, removed or replaced since older.
+     */
+    void diff(@NonNull DeviceSnapshot older, @NonNull PathTrie.DiffHandler handler) {
+        PathTrie.diff(older.index, index, handler);
+    }
+
+    @NonNull
+    private DeviceSnapshot compact() {
+        PersistentVector<Entry> compactedSlots = PersistentVector.empty();
+        PathTrie compactedIndex = PathTrie.EMPTY;
+        for (final Entry entry : entries()) {
+            final Entry moved = new Entry(entry.path, entry.announce, entry.text, entry.confirmed, compactedSlots.size());
+            compactedSlots = compactedSlots.append(moved);
+            compactedIndex = compactedIndex.put(moved);
+        }
+        return new DeviceSnapshot(compactedSlots, compactedIndex, size);
+    }
+
+    static final class Entry {
+        @NonNull
+        final CommunicationPath path;
+        @NonNull
+        final Announce announce;
+        @NonNull
+        final DeviceText text;
+        final boolean confirmed;
+        final int slot;
+
+        Entry(@NonNull CommunicationPath path, @NonNull Announce announce, @NonNull DeviceText text,
+              boolean confirmed, int slot) {
+            this.path = path;
+            this.announce = announce;
+            this.text = text;
+            this.confirmed = confirmed;
+            this.slot = slot;
+        }
+    }
+
+    private final class EntryIterator implements Iterator<Entry> {
+        private int slot = -1;
+        private Object[] leaf;
+
+        EntryIterator() {
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return slot < slots.size();
+        }
+
+        @Override
+        public Entry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final Entry entry = (Entry) leaf[slot & 31];
+            advance();
+            return entry;
+        }
+
+        private void advance() {
+            final int slotCount = slots.size();
+            for (slot++; slot < slotCount; slot++) {
+                if (leaf == null || (slot & 31) == 0) {
+                    leaf = slots.leafFor(slot);
+                }
+                if (leaf[slot & 31] != null) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.hbm.devices.scan.announce.Announce;
+
+/**
+ * Store of the currently announced devices, indexed by communication path. Adding, updating
+ * and removing a device is O(log n). Devices are iterated in the order they were first
+ * announced, an update keeps the position of the device.
+ *
+ * <p>The store keeps its devices in a persistent {@link DeviceSnapshot}, so publishing the
+ * current state to other threads does not need a copy.</p>
+ */
+final class DeviceStore {
+
+    @NonNull
+    private final StringPool strings = new StringPool();
+    @NonNull
+    private DeviceSnapshot devices = DeviceSnapshot.EMPTY;
+
+    void put(@NonNull Announce announce) {
+        devices = devices.put(announce, strings);
+    }
+
+    void remove(@NonNull Announce announce) {
+        devices = devices.remove(announce);
+    }
+
+    void remove(@NonNull CommunicationPath path) {
+        devices = devices.remove(path);
+    }
+
+    /**
+     * Adds a device restored from the {@link DeviceCache}. It stays unconfirmed until it is
+     * {@link #put(Announce)} again.
+     */
+    void restore(@NonNull Announce announce) {
+        devices = devices.putUnconfirmed(announce, strings);
+    }
+
+    @Nullable
+    DeviceSnapshot.Entry getEntry(@NonNull CommunicationPath path) {
+        return devices.getEntry(path);
+    }
+
+    int size() {
+        return devices.size();
+    }
+
+    @NonNull
+    DeviceSnapshot snapshot() {
+        return devices;
+    }
+}
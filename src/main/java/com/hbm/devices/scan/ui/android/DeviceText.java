@@ -0,0 +1,127 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.hbm.devices.scan.announce.Announce;
+import com.hbm.devices.scan.announce.Device;
+
+import java.util.Locale;
+
+/**
+ * The texts of a device the device list is filtered by, upper-cased once when the device is
+ * announced instead of on every keystroke. A text that is already upper case is used as is.
+ * Folded names and types repeat across devices, so they are taken from a {@link StringPool}
+ * and devices of the same type or with the same name share them. A device re-announced with
+ * unchanged texts keeps its DeviceText instance.
+ *
+ * <p>This costs heap compared to folding on every keystroke: the instance itself, plus the
+ * folded UUID and any folded name or type not shared with other devices.</p>
+ */
+final class DeviceText {
+
+    @NonNull
+    private final String name;
+    @NonNull
+    private final String type;
+    @NonNull
+    private final String uuid;
+    @NonNull
+    private final String foldedDisplayName;
+    @NonNull
+    private final String foldedType;
+    @NonNull
+    private final String foldedUuid;
+
+    private DeviceText(@NonNull String name, @NonNull String type, @NonNull String uuid,
+                       @NonNull StringPool pool) {
+        this.name = name;
+        this.type = type;
+        this.uuid = uuid;
+        foldedUuid = fold(uuid);
+        foldedDisplayName = name.isEmpty() ? foldedUuid : pool.intern(fold(name));
+        foldedType = pool.intern(fold(type));
+    }
+
+    /**
+     * @param previous the text of the previous announce of the device, if any. It is returned
+     *                 if the texts of the device did not change.
+     */
+    @NonNull
+    static DeviceText of(@NonNull Announce announce, @Nullable DeviceText previous,
+                         @NonNull StringPool pool) {
+        final Device device = announce.getParams().getDevice();
+        final String name = nonNull(device.getName());
+        final String type = nonNull(device.getType());
+        final String uuid = nonNull(device.getUuid());
+        if (previous != null && previous.name.equals(name) && previous.type.equals(type)
+                && previous.uuid.equals(uuid)) {
+            return previous;
+        }
+        return new DeviceText(name, type, uuid, pool);
+    }
+
+    /**
+     * @param foldedConstraint the filter string, upper-cased with {@link Locale#US}.
+     * @return true if the display name, type or UUID of the device contains the constraint.
+     */
+    boolean matches(@NonNull String foldedConstraint) {
+        return foldedDisplayName.contains(foldedConstraint)
+                || foldedType.contains(foldedConstraint)
+                || foldedUuid.contains(foldedConstraint);
+    }
+
+    @NonNull
+    String getFoldedDisplayName() {
+        return foldedDisplayName;
+    }
+
+    @NonNull
+    String getFoldedType() {
+        return foldedType;
+    }
+
+    @NonNull
+    String getFoldedUuid() {
+        return foldedUuid;
+    }
+
+    @NonNull
+    private static String fold(@NonNull String string) {
+        final String folded = string.toUpperCase(Locale.US);
+        return folded.equals(string) ? string : folded;
+    }
+
+    @NonNull
+    private static String nonNull(@Nullable String string) {
+        return string == null ? "" : string;
+    }
+}
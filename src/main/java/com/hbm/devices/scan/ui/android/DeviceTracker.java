@@ -0,0 +1,120 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+
+import com.hbm.devices.scan.announce.Announce;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the announced devices. A device is new on its first announce, updated when an
+ * announce differs from the previous one and lost when it was not announced again within the
+ * expiration time given in its announce. Expiry is tracked by an {@link ExpiryWheel}, so
+ * refreshing a device does not cancel and reschedule a timer.
+ *
+ * <p>Devices restored from the {@link DeviceCache} are unconfirmed until they are announced
+ * and expire like any other device if they are not.</p>
+ *
+ * <p>All methods have to be called from the same thread, the device state stage of the
+ * {@link ScanPipeline}.</p>
+ */
+final class DeviceTracker {
+
+    static final long DEFAULT_EXPIRATION_SECONDS = 15;
+
+    @NonNull
+    private final DeviceStore collectedAnnounces;
+    @NonNull
+    private final ExpiryWheel<CommunicationPath> expiries;
+    @NonNull
+    private final SnapshotCoalescer coalescer;
+    @NonNull
+    private final List<CommunicationPath> expired;
+
+    DeviceTracker(@NonNull SnapshotCoalescer coalescer, @NonNull Clock clock) {
+        this.coalescer = coalescer;
+        collectedAnnounces = new DeviceStore();
+        expiries = new ExpiryWheel<>(clock);
+        expired = new ArrayList<>();
+    }
+
+    void announced(@NonNull Announce announce) {
+        final CommunicationPath path = new CommunicationPath(announce);
+        expiries.schedule(path, expirationMillis(announce));
+        final DeviceSnapshot.Entry old = collectedAnnounces.getEntry(path);
+        if (old == null || !old.confirmed || !announce.equals(old.announce)) {
+            collectedAnnounces.put(announce);
+            coalescer.submit(collectedAnnounces.snapshot());
+        }
+    }
+
+    /**
+     * Adds cached devices as unconfirmed devices. Devices already known are left alone.
+     */
+    void restore(@NonNull List<Announce> announces) {
+        boolean restored = false;
+        for (final Announce announce : announces) {
+            final CommunicationPath path = new CommunicationPath(announce);
+            if (collectedAnnounces.getEntry(path) == null) {
+                collectedAnnounces.restore(announce);
+                expiries.schedule(path, expirationMillis(announce));
+                restored = true;
+            }
+        }
+        if (restored) {
+            coalescer.submit(collectedAnnounces.snapshot());
+        }
+    }
+
+    /**
+     * Removes all devices whose announce expired.
+     */
+    void sweep() {
+        if (expiries.advance(expired) == 0) {
+            return;
+        }
+        for (final CommunicationPath path : expired) {
+            collectedAnnounces.remove(path);
+        }
+        expired.clear();
+        coalescer.submit(collectedAnnounces.snapshot());
+    }
+
+    private static long expirationMillis(@NonNull Announce announce) {
+        long expiration = announce.getParams().getExpiration();
+        if (expiration <= 0) {
+            expiration = DEFAULT_EXPIRATION_SECONDS;
+        }
+        return TimeUnit.SECONDS.toMillis(expiration);
+    }
+}
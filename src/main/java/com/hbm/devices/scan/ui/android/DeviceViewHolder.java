@@ -39,12 +39,12 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.hbm.devices.scan.announce.Announce;
-import com.hbm.devices.scan.announce.Device;
-import com.squareup.picasso.Picasso;
 final class DeviceViewHolder extends RecyclerView.ViewHolder {
 
     public static final String DETAILS = "Details";
 
+    private static final float UNCONFIRMED_ALPHA = 0.5f;
+
     private final TextView tvModuleId;
     private final TextView tvModuleType;
     private final TextView tvModuleName;
@@ -52,11 +52,15 @@ final class DeviceViewHolder extends RecyclerView.ViewHolder {
     private final ImageButton infoButton;
     @NonNull
     private final CardView cardView;
+    @NonNull
+    private final CardState state;
+    @NonNull
+    private final DevicePhotoCache photos;
     protected final Context context;
 
     protected Announce announce;
 
-    DeviceViewHolder(@NonNull CardView itemView) {
+    DeviceViewHolder(@NonNull CardView itemView, @NonNull DevicePhotoCache photos) {
         super(itemView);
 
         context = itemView.getContext();
@@ -67,60 +71,58 @@ final class DeviceViewHolder extends RecyclerView.ViewHolder {
         devicePhoto = itemView.findViewById(R.id.device_photo);
         infoButton = itemView.findViewById(R.id.infoButton);
         cardView = itemView;
+        state = new CardState(context.getString(R.string.unknown), DeviceImageResolver.get(context));
+        this.photos = photos;
 
-    }
-
-    void bind(@NonNull Announce a) {
-        this.announce = a;
-        final Device device = announce.getParams().getDevice();
-        final String displayName = getDisplayName(device);
-        final String moduleType = getModuleType(device);
-        final String uuid = device.getUuid();
-
-        tvModuleType.setText(moduleType);
-        tvModuleName.setText(displayName);
-        tvModuleId.setText(uuid);
-        devicePhoto.setImageDrawable(null);
-        final Picasso picasso = Picasso.get();
-        picasso.load(getImageResourceId(a)).into(devicePhoto);
-
-        cardView.setOnClickListener(new ModuleCardClickListener(announce, moduleType));
-
+        cardView.setOnClickListener(new ModuleCardClickListener(this));
         infoButton.setOnClickListener(v -> {
             final Intent intent = new Intent(context, DeviceDetailsActivity.class);
-            intent.putExtra(DETAILS, announce);
+            intent.putExtra(DETAILS, new AnnounceParcel(announce));
             ActivityCompat.startActivity(context, intent, null);
             ((ScanActivity) context).overridePendingTransition(R.anim.activity_in, R.anim.activity_out);
         });
     }
 
-    private static int getImageResourceId(Announce announce) {
-        String key = announce.getParams().getDevice().getLabel();
-        if (key == null || key.isEmpty()) {
-            key = announce.getParams().getDevice().getType();
-        }
-
-        if (key == null || key.isEmpty()) {
-            return R.drawable.ic_no_device;
-        }
-        return ImageResourceCache.getResourceFromCache(key);
+    /**
+     * @param confirmed false if the device was restored from the device cache and has not been
+     *                  announced since. Such devices are shown dimmed.
+     */
+    void bind(@NonNull Announce a, boolean confirmed) {
+        update(a, confirmed, state.bind(a) | CardFields.CONFIRMATION);
     }
 
-    private String getModuleType(final Device device) {
-        String moduleType = device.getType();
-        if (moduleType == null || moduleType.length() == 0) {
-            moduleType = context.getString(R.string.unknown);
-        }
-
-        return moduleType;
+    /**
+     * Takes the new announce of the bound device. Only the changed fields are compared with
+     * what the card shows, and only views showing something else are updated. The listeners
+     * read the announce when clicked, so they stay as they are.
+     *
+     * @param changedFields the {@link CardFields} bits of the fields that changed since the
+     *                      last bind.
+     */
+    void bindChanges(@NonNull Announce a, boolean confirmed, int changedFields) {
+        update(a, confirmed, state.bind(a, changedFields) | (changedFields & CardFields.CONFIRMATION));
     }
 
-    private String getDisplayName(final Device device) {
-        String displayName = device.getName();
-        if (displayName == null || displayName.length() == 0) {
-            displayName = context.getString(R.string.unknown);
+    /*
+     * Also a full bind only touches the views that differ, so rebinding a recycled card of the
+     * same type doesn't reload the photo.
+     */
+    private void update(@NonNull Announce a, boolean confirmed, int fields) {
+        this.announce = a;
+        if ((fields & CardFields.TYPE) != 0) {
+            tvModuleType.setText(state.getType());
+        }
+        if ((fields & CardFields.NAME) != 0) {
+            tvModuleName.setText(state.getName());
+        }
+        if ((fields & CardFields.UUID) != 0) {
+            tvModuleId.setText(state.getUuid());
+        }
+        if ((fields & CardFields.CONFIRMATION) != 0) {
+            cardView.setAlpha(confirmed ? 1.0f : UNCONFIRMED_ALPHA);
+        }
+        if ((fields & CardFields.PHOTO) != 0) {
+            photos.load(state.getImageResource(), devicePhoto);
         }
-
-        return displayName;
     }
 }
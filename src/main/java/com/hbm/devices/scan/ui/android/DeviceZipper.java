@@ -28,12 +28,8 @@
 
 package com.hbm.devices.scan.ui.android;
 
-import android.net.Uri;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.core.content.FileProvider;
-import androidx.appcompat.app.AppCompatActivity;
-import android.widget.Toast;
 
 import com.hbm.devices.scan.announce.Announce;
 
@@ -41,86 +37,325 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Writes announces as a zipped JSON document into the cache directory.
+ *
+ * <p>An export is named by a hash of the devices it contains. Sharing the same devices
+ * again returns the existing file as long as it wasn't cleaned up, and only the newest
+ * {@link #KEPT_EXPORTS} files are kept. The export time is not part of the hash, so a reused
+ * export keeps the date of the export that created it. The JSON entry is assembled from per device
+ * segments of an {@link ExportSegmentCache}, so after a change only the changed devices
+ * are compressed again. The zip file itself is written by hand, because
+ * {@link java.util.zip.ZipOutputStream} can't take data that is already deflated.</p>
+ *
+ * <p>Exports run off the main thread, one at a time. The compressed segments kept between
+ * exports are bounded by a byte budget and can be released with {@link #trimMemory()}.</p>
+ */
 final class DeviceZipper {
 
-    private static final String FILE_NAME = "devices.zip";
+    static final String DIRECTORY = "devices";
+    static final String ENTRY_NAME = "devices.json";
+    static final int KEPT_EXPORTS = 4;
+    static final long MAX_CACHED_BYTES = 2 * 1024 * 1024;
 
-    private DeviceZipper() {}
+    private static final String VERSION = "1.0";
+    private static final String PREFIX = "devices-";
+    private static final String SUFFIX = ".zip";
+    private static final int NAME_HASH_BYTES = 8;
+    private static final String SEPARATOR = ",\n";
+    private static final String TAIL = "]}";
 
-    @Nullable
-    static Uri saveAnnounce(Announce announce, @NonNull AppCompatActivity activity) {
-        final List<Announce> list = new ArrayList<>();
-        list.add(announce);
-        return saveAnnounces(list, activity);
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final short ZIP_VERSION = 20;
+    private static final short DEFLATED = 8;
+
+    /**
+     * Receives the progress of an export from the exporting thread.
+     */
+    interface Progress {
+        /**
+         * @return {@code false} to cancel the export
+         */
+        boolean onProgress(int done, int total);
+    }
+
+    @NonNull
+    private final ExportSegmentCache segments;
+    @NonNull
+    private final byte[] entryName = ENTRY_NAME.getBytes(StandardCharsets.UTF_8);
+    @NonNull
+    private final Lock lock = new ReentrantLock();
+    private volatile boolean trimRequested;
+    private ExportSegmentCache.Segment separator;
+    private ExportSegmentCache.Segment tail;
+
+    DeviceZipper() {
+        this(MAX_CACHED_BYTES);
     }
 
-    static Uri saveAnnounces(@NonNull List<Announce> announces, @NonNull AppCompatActivity activity) {
-        final TimeZone tz = TimeZone.getTimeZone("UTC");
-        final DateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
-        df.setTimeZone(tz);
-        final String isoDate = df.format(new Date());
-        final Charset charSet = Charset.forName("UTF-8");
+    /**
+     * @param maxCachedBytes the compressed bytes kept for the next export.
+     */
+    DeviceZipper(long maxCachedBytes) {
+        segments = new ExportSegmentCache(maxCachedBytes);
+    }
 
+    /**
+     * @return the exported file or {@code null} if the export was cancelled, in which
+     *     case nothing is left behind
+     */
+    @Nullable
+    File export(@NonNull Collection<Announce> announces, @NonNull File cacheDir, long time,
+                @NonNull Progress progress) throws IOException {
+        lock.lock();
         try {
-            final File file = createFile(activity);
-            if (file == null) {
-                return null;
+            return exportLocked(announces, cacheDir, time, progress);
+        } finally {
+            segments.sweep();
+            lock.unlock();
+            if (trimRequested) {
+                trimMemory();
             }
-            final FileOutputStream fos = new FileOutputStream(file, false);
-            final ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(fos));
-            final ZipEntry entry = new ZipEntry("devices.json");
-            zos.putNextEntry(entry);
-            zos.write(("{\"date\":\"" + isoDate + "\",").getBytes(charSet));
-            zos.write(("\"version\": \"1.0\",").getBytes(charSet));
-            zos.write("\"devices\":[".getBytes(charSet));
-
-            final Iterator<Announce> iterator = announces.iterator();
-            while (iterator.hasNext()) {
-                final Announce announce = iterator.next();
-                zos.write(announce.getJSONString().getBytes(charSet));
-                if (iterator.hasNext()) {
-                    zos.write(",\n".getBytes(charSet));
+        }
+    }
+
+    /**
+     * Drops the compressed segments kept for the next export. Doesn't wait for a running
+     * export, which drops them when it is done instead.
+     */
+    void trimMemory() {
+        trimRequested = true;
+        if (lock.tryLock()) {
+            try {
+                if (trimRequested) {
+                    trimRequested = false;
+                    segments.clear();
                 }
+            } finally {
+                lock.unlock();
             }
+        }
+    }
 
-            zos.write("]}".getBytes(charSet));
-            zos.closeEntry();
-            zos.close();
-            fos.close();
-            return FileProvider.getUriForFile(activity, "com.hbm.devices.scan.ui.android.fileprovider", file);
-        } catch (IOException e) {
-            Toast.makeText(activity, activity.getString(R.string.could_not_create, e),
-                    Toast.LENGTH_SHORT).show();
-            return null;
+    long getCachedBytes() {
+        lock.lock();
+        try {
+            return segments.getCachedBytes();
+        } finally {
+            lock.unlock();
         }
     }
 
-    private static File createFile(AppCompatActivity activity) throws IOException {
-        final File cacheDir = activity.getCacheDir();
-        final File subDir = new File(cacheDir, "devices");
-        if (!subDir.exists() && (!subDir.mkdirs())) {
-            return null;
+    @Nullable
+    private File exportLocked(@NonNull Collection<Announce> announces, @NonNull File cacheDir, long time,
+                              @NonNull Progress progress) throws IOException {
+        final File directory = new File(cacheDir, DIRECTORY);
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create directory!");
         }
-        final File file = new File(subDir, FILE_NAME);
-        if (file.exists() && !file.delete()) {
-            throw new IOException("Cold not delete file!");
+
+        final MessageDigest key = newDigest();
+        key.update(VERSION.getBytes(StandardCharsets.UTF_8));
+        final List<ExportSegmentCache.Segment> devices = new ArrayList<>(announces.size());
+        for (final Announce announce : announces) {
+            final ExportSegmentCache.Segment segment = segments.get(announce.getJSONString());
+            key.update(segment.digest);
+            devices.add(segment);
         }
-        if (!file.createNewFile()) {
-            throw new IOException("Could not create file!");
+
+        final File file = new File(directory, PREFIX + toHex(key.digest(), NAME_HASH_BYTES) + SUFFIX);
+        if (file.isFile()) {
+            // Keeps a reused export from being cleaned up as an old one.
+            if (!file.setLastModified(time)) {
+                throw new IOException("Could not touch file!");
+            }
+            return file;
         }
-        return file;
+
+        removeOldExports(directory, KEPT_EXPORTS - 1);
+        final File part = File.createTempFile(PREFIX, ".part", directory);
+        boolean complete = false;
+        try {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(part))) {
+                complete = write(devices, time, out, progress);
+            }
+            if (complete && !part.renameTo(file)) {
+                complete = false;
+                throw new IOException("Could not rename file!");
+            }
+        } finally {
+            if (!complete && part.exists() && !part.delete()) {
+                part.deleteOnExit();
+            }
+        }
+        return complete ? file : null;
+    }
+
+    long getDeflatedSegments() {
+        return segments.getDeflatedSegments();
+    }
+
+    /**
+     * Deletes all but the {@code keep} most recently modified files in {@code directory}.
+     */
+    static void removeOldExports(@NonNull File directory, int keep) {
+        final File[] files = directory.listFiles();
+        if (files == null || files.length <= keep) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                final int byAge = Long.compare(b.lastModified(), a.lastModified());
+                return byAge != 0 ? byAge : b.getName().compareTo(a.getName());
+            }
+        });
+        for (int i = keep; i < files.length; i++) {
+            if (!files[i].delete()) {
+                files[i].deleteOnExit();
+            }
+        }
+    }
+
+    private boolean write(@NonNull List<ExportSegmentCache.Segment> devices, long time, @NonNull OutputStream out,
+                          @NonNull Progress progress) throws IOException {
+        if (separator == null) {
+            separator = segments.createDeflated(SEPARATOR);
+            tail = segments.createDeflated(TAIL);
+        }
+        final ExportSegmentCache.Segment head = segments.createDeflated("{\"date\":\""
+                + format("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", time) + "\",\"version\": \"" + VERSION
+                + "\",\"devices\":[");
+
+        final int total = devices.size();
+        int crc = head.crc;
+        long length = head.length;
+        long compressedLength = head.deflated.length + tail.deflated.length + ExportSegmentCache.FINAL_BLOCK.length;
+        for (int i = 0; i < total; i++) {
+            final ExportSegmentCache.Segment device = devices.get(i);
+            segments.deflate(device);
+            if (!progress.onProgress(i + 1, total)) {
+                return false;
+            }
+            if (i > 0) {
+                crc = Crc32.combine(crc, separator.crc, separator.length);
+                length += separator.length;
+                compressedLength += separator.deflated.length;
+            }
+            crc = Crc32.combine(crc, device.crc, device.length);
+            length += device.length;
+            compressedLength += device.deflated.length;
+        }
+        crc = Crc32.combine(crc, tail.crc, tail.length);
+        length += tail.length;
+        if (length > 0xffffffffL || compressedLength > 0xffffffffL) {
+            throw new IOException("Export too large!");
+        }
+
+        final int dosTime = dosTime(time);
+        out.write(header(LOCAL_HEADER, dosTime, crc, (int) compressedLength, (int) length));
+        out.write(head.deflated);
+        for (int i = 0; i < total; i++) {
+            if (i > 0) {
+                out.write(separator.deflated);
+            }
+            out.write(devices.get(i).deflated);
+        }
+        out.write(tail.deflated);
+        out.write(ExportSegmentCache.FINAL_BLOCK);
+
+        final long centralOffset = 30L + entryName.length + compressedLength;
+        final byte[] central = header(CENTRAL_HEADER, dosTime, crc, (int) compressedLength, (int) length);
+        out.write(central);
+        final ByteBuffer end = ByteBuffer.allocate(22).order(ByteOrder.LITTLE_ENDIAN);
+        end.putInt(END_OF_CENTRAL_DIRECTORY).putShort((short) 0).putShort((short) 0)
+                .putShort((short) 1).putShort((short) 1)
+                .putInt(central.length).putInt((int) centralOffset).putShort((short) 0);
+        out.write(end.array());
+        return true;
     }
-}
 
+    /**
+     * Creates the local or central header of the only entry, which starts at offset 0.
+     */
+    @NonNull
+    private byte[] header(int signature, int dosTime, int crc, int compressedLength, int length) {
+        final boolean central = signature == CENTRAL_HEADER;
+        final ByteBuffer header = ByteBuffer.allocate((central ? 46 : 30) + entryName.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(signature);
+        if (central) {
+            header.putShort(ZIP_VERSION);
+        }
+        header.putShort(ZIP_VERSION).putShort((short) 0).putShort(DEFLATED).putInt(dosTime)
+                .putInt(crc).putInt(compressedLength).putInt(length)
+                .putShort((short) entryName.length).putShort((short) 0);
+        if (central) {
+            // comment length, disk, internal and external attributes, local header offset
+            header.putShort((short) 0).putShort((short) 0).putShort((short) 0).putInt(0).putInt(0);
+        }
+        header.put(entryName);
+        return header.array();
+    }
+
+    /**
+     * @return MS-DOS time in the low and date in the high half, in local time like
+     *     {@link java.util.zip.ZipEntry#setTime(long)}
+     */
+    private static int dosTime(long time) {
+        final Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        final int year = Math.max(calendar.get(Calendar.YEAR), 1980);
+        return ((year - 1980) << 25) | ((calendar.get(Calendar.MONTH) + 1) << 21)
+                | (calendar.get(Calendar.DAY_OF_MONTH) << 16) | (calendar.get(Calendar.HOUR_OF_DAY) << 11)
+                | (calendar.get(Calendar.MINUTE) << 5) | (calendar.get(Calendar.SECOND) >> 1);
+    }
+
+    @NonNull
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @NonNull
+    private static String toHex(@NonNull byte[] bytes, int count) {
+        final StringBuilder builder = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            builder.append(Character.forDigit((bytes[i] >> 4) & 0xf, 16));
+            builder.append(Character.forDigit(bytes[i] & 0xf, 16));
+        }
+        return builder.toString();
+    }
+
+    @NonNull
+    private static String format(@NonNull String pattern, long time) {
+        final DateFormat format = new SimpleDateFormat(pattern, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(time));
+    }
+}
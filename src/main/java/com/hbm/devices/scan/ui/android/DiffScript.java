@@ -0,0 +1,108 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Records the notifications of a {@link DisplayUpdateEventGenerator} so they can be replayed
+ * later on another thread.
+ */
+final class DiffScript implements DisplayNotifier {
+
+    private static final int REMOVE = 0;
+    private static final int ADD = 1;
+    private static final int CHANGE = 2;
+    private static final int MOVE = 3;
+    private static final int OPERATION_SIZE = 3;
+    private static final int INITIAL_CAPACITY = 16 * OPERATION_SIZE;
+
+    @NonNull
+    private int[] operations = new int[INITIAL_CAPACITY];
+    private int length;
+
+    @Override
+    public void notifyRemoveAt(int position) {
+        record(REMOVE, position, 0);
+    }
+
+    @Override
+    public void notifyAddAt(int position) {
+        record(ADD, position, 0);
+    }
+
+    @Override
+    public void notifyChangeAt(int position, int changedFields) {
+        record(CHANGE, position, changedFields);
+    }
+
+    @Override
+    public void notifyMoved(int fromPosition, int toPosition) {
+        record(MOVE, fromPosition, toPosition);
+    }
+
+    int size() {
+        return length / OPERATION_SIZE;
+    }
+
+    /**
+     * Sends all recorded notifications to notifier, in the order they were recorded.
+     */
+    void replay(@NonNull DisplayNotifier notifier) {
+        for (int i = 0; i < length; i += OPERATION_SIZE) {
+            final int position = operations[i + 1];
+            switch (operations[i]) {
+                case REMOVE:
+                    notifier.notifyRemoveAt(position);
+                    break;
+                case ADD:
+                    notifier.notifyAddAt(position);
+                    break;
+                case CHANGE:
+                    notifier.notifyChangeAt(position, operations[i + 2]);
+                    break;
+                default:
+                    notifier.notifyMoved(position, operations[i + 2]);
+                    break;
+            }
+        }
+    }
+
+    private void record(int operation, int first, int second) {
+        if (length + OPERATION_SIZE > operations.length) {
+            operations = Arrays.copyOf(operations, operations.length * 2);
+        }
+        operations[length] = operation;
+        operations[length + 1] = first;
+        operations[length + 2] = second;
+        length += OPERATION_SIZE;
+    }
+}
@@ -45,8 +45,9 @@ interface DisplayNotifier {
     /**
      * Notifies that an element has been changed at a certain position.
      * @param position where the element was changed
+     * @param changedFields the {@link CardFields} bits of the displayed fields that changed
      */
-    void notifyChangeAt(int position);
+    void notifyChangeAt(int position, int changedFields);
 
     /**
      * Notifies that an element has been moved at a certain position.
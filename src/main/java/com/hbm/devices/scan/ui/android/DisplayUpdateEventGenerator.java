@@ -32,9 +32,18 @@ import androidx.annotation.NonNull;
 
 import com.hbm.devices.scan.announce.Announce;
 
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Turns the displayed list into a new list and tells the {@link DisplayNotifier} how, as a
+ * sequence of removals, changes, moves and additions. Every position refers to the list as
+ * left by the notifications before. Devices are matched by communication path.
+ *
+ * <p>Only devices not on the longest increasing subsequence of the kept devices are moved, so
+ * the number of moves is minimal. The whole diff takes O(n log n).</p>
+ */
 class DisplayUpdateEventGenerator {
     private final DisplayNotifier notifier;
 
@@ -42,86 +51,207 @@ class DisplayUpdateEventGenerator {
         this.notifier = n;
     }
 
+    /**
+     * Notifies the changes from oldList to newList. Afterwards oldList has the same content as
+     * newList.
+     */
     void compareLists(@NonNull final List<Announce> oldList, @NonNull final List<Announce> newList) {
-        ArrayList<Announce> oldListClone = new ArrayList<>(oldList);
-        ArrayList<Announce> newListClone = new ArrayList<>(newList);
-
-        try {
-            updateRemovals(oldList, newList);
-            updateAdditions(oldList, newList);
-            updateMoves(oldList, newList);
-        } catch (IndexOutOfBoundsException e) {
-            StringBuilder sb = new StringBuilder();
-            sb.append("oldList size: ").append(oldListClone.size()).append('\n');
-            sb.append("newList size: ").append(newListClone.size()).append('\n');
-            sb.append("oldList:\n");
-            addList(oldListClone, sb);
-            sb.append("\n\n");
-            sb.append("newList:\n");
-            addList(newListClone, sb);
-            throw new IndexOutOfBoundsException(sb.toString());
+        final int newSize = newList.size();
+        final Map<CommunicationPath, Integer> newPositions = new HashMap<>(newSize * 4 / 3 + 1);
+        for (int i = newSize - 1; i >= 0; i--) {
+            newPositions.put(new CommunicationPath(newList.get(i)), i);
         }
-    }
 
-    private void addList(List<Announce> list, @NonNull StringBuilder sb) {
-        final int count = list.size();
-        for (int i = 0; i < count; i++) {
-            final Announce a = list.get(i);
-//            sb.append("uuid: ").append(a.getParams().getDevice().getUuid()).append(" commPath: ").append
-//                    (getCommunicationPath(a)).append('\n');
-            sb.append("json: ").append(a.getJSONString()).append('\n');
+        final int oldSize = oldList.size();
+        final int[] targets = new int[oldSize];
+        final boolean[] kept = new boolean[newSize];
+        for (int i = 0; i < oldSize; i++) {
+            final Integer target = newPositions.get(new CommunicationPath(oldList.get(i)));
+            if (target == null || kept[target]) {
+                targets[i] = -1;
+            } else {
+                targets[i] = target;
+                kept[target] = true;
+            }
         }
+
+        final int keptCount = updateRemovals(oldList, targets);
+        updateChanges(oldList, newList, targets, keptCount);
+        updateMoves(targets, kept, keptCount);
+        updateAdditions(oldList, newList, kept);
     }
 
-    private void updateRemovals(final List<Announce> oldList, @NonNull final List<Announce> newList) {
-        final int count = oldList.size();
-        for (int i = count - 1; i >= 0; i--) {
-            final Announce announce = oldList.get(i);
-            if (getIndexInList(newList, announce) == -1) {
-                oldList.remove(i);
+    /*
+     * Removes from the back, so every position is still the position in the old list.
+     * Afterwards oldList and targets only hold the kept devices.
+     */
+    private int updateRemovals(@NonNull final List<Announce> oldList, @NonNull final int[] targets) {
+        final int oldSize = targets.length;
+        for (int i = oldSize - 1; i >= 0; i--) {
+            if (targets[i] < 0) {
                 notifier.notifyRemoveAt(i);
             }
         }
+        int keptCount = 0;
+        for (int i = 0; i < oldSize; i++) {
+            if (targets[i] >= 0) {
+                oldList.set(keptCount, oldList.get(i));
+                targets[keptCount] = targets[i];
+                keptCount++;
+            }
+        }
+        oldList.subList(keptCount, oldSize).clear();
+        return keptCount;
     }
 
-    private void updateAdditions(@NonNull final List<Announce> oldList, final List<Announce> newList) {
-        final int count = newList.size();
-        for (int i = 0; i < count; i++) {
-            final Announce announce = newList.get(i);
-            final int changeIndex = getIndexInList(oldList, announce);
-            if (changeIndex == -1) {
-                oldList.add(announce);
-                notifier.notifyAddAt(oldList.size() - 1);
+    private void updateChanges(@NonNull final List<Announce> oldList, @NonNull final List<Announce> newList,
+                               @NonNull final int[] targets, int keptCount) {
+        for (int i = 0; i < keptCount; i++) {
+            final Announce announce = newList.get(targets[i]);
+            final Announce oldAnnounce = oldList.get(i);
+            if (!oldAnnounce.equals(announce)) {
+                oldList.set(i, announce);
+                notifier.notifyChangeAt(i, CardFields.changed(oldAnnounce, announce));
+            }
+        }
+    }
+
+    /*
+     * Kept devices on the longest increasing subsequence of their ranks in the new list stay
+     * where they are. Every other device is moved behind the device ranked just before it,
+     * which builds a chain of moved devices behind every staying device. All final places are
+     * known up front, so they are laid out as slots: the head chain, then for every kept
+     * device its current slot followed by its chain. A Fenwick tree over the occupied slots
+     * turns slots into current positions.
+     */
+    private void updateMoves(@NonNull final int[] targets, @NonNull final boolean[] kept, int keptCount) {
+        final int[] rankOfTarget = new int[kept.length];
+        int rank = 0;
+        for (int i = 0; i < kept.length; i++) {
+            if (kept[i]) {
+                rankOfTarget[i] = rank++;
+            }
+        }
+        final int[] ranks = new int[keptCount];
+        final int[] byRank = new int[keptCount];
+        for (int i = 0; i < keptCount; i++) {
+            ranks[i] = rankOfTarget[targets[i]];
+            byRank[ranks[i]] = i;
+        }
+        final boolean[] staying = longestIncreasingSubsequence(ranks);
+
+        final int[] anchors = new int[keptCount];
+        final int[] chainLengths = new int[keptCount];
+        int headLength = 0;
+        int anchor = -1;
+        for (int r = 0; r < keptCount; r++) {
+            final int i = byRank[r];
+            if (staying[i]) {
+                anchor = i;
             } else {
-                Announce oldAnnounce = oldList.get(changeIndex);
-                if (!oldAnnounce.equals(announce)) {
-                    oldList.set(changeIndex, announce);
-                    notifier.notifyChangeAt(changeIndex);
+                anchors[i] = anchor;
+                if (anchor < 0) {
+                    headLength++;
+                } else {
+                    chainLengths[anchor]++;
                 }
             }
         }
-    }
 
-    private void updateMoves(@NonNull final List<Announce> oldList, final List<Announce> newList) {
-        for (int toPosition = newList.size() - 1; toPosition >= 0; toPosition--) {
-            final Announce model = newList.get(toPosition);
-            final int fromPosition = oldList.indexOf(model);
-            if ((fromPosition >= 0) && (fromPosition != toPosition)) {
-                final Announce announce = oldList.remove(fromPosition);
-                oldList.add(toPosition, announce);
+        final int[] slots = new int[keptCount];
+        final int[] chainStarts = new int[keptCount];
+        int slotCount = headLength;
+        for (int i = 0; i < keptCount; i++) {
+            slots[i] = slotCount++;
+            chainStarts[i] = slotCount;
+            slotCount += chainLengths[i];
+        }
+
+        final int[] tree = new int[slotCount + 1];
+        for (int i = 0; i < keptCount; i++) {
+            add(tree, slots[i], 1);
+        }
+        int headUsed = 0;
+        for (int r = 0; r < keptCount; r++) {
+            final int i = byRank[r];
+            if (staying[i]) {
+                continue;
+            }
+            final int target;
+            if (anchors[i] < 0) {
+                target = headUsed++;
+            } else {
+                target = chainStarts[anchors[i]]++;
+            }
+            final int fromPosition = prefixSum(tree, slots[i]) - 1;
+            add(tree, slots[i], -1);
+            add(tree, target, 1);
+            final int toPosition = prefixSum(tree, target) - 1;
+            if (fromPosition != toPosition) {
                 notifier.notifyMoved(fromPosition, toPosition);
             }
         }
     }
 
-    private static int getIndexInList(final List<Announce> list, @NonNull final Announce announce) {
-        final int size = list.size();
-        for (int i = 0; i < size; i++) {
-            final Announce element = list.get(i);
-            if (element.sameCommunicationPath(announce)) {
-                return i;
+    /*
+     * After the moves the kept devices are in their final order, so every added device can be
+     * inserted at its final position, front to back.
+     */
+    private void updateAdditions(@NonNull final List<Announce> oldList, @NonNull final List<Announce> newList,
+                                 @NonNull final boolean[] kept) {
+        oldList.clear();
+        oldList.addAll(newList);
+        for (int i = 0; i < kept.length; i++) {
+            if (!kept[i]) {
+                notifier.notifyAddAt(i);
             }
         }
-        return -1;
+    }
+
+    @NonNull
+    private static boolean[] longestIncreasingSubsequence(@NonNull final int[] values) {
+        final int count = values.length;
+        final int[] tails = new int[count];
+        final int[] predecessors = new int[count];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (values[tails[middle]] < values[i]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            predecessors[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+        final boolean[] member = new boolean[count];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = predecessors[i]) {
+            member[i] = true;
+        }
+        return member;
+    }
+
+    private static void add(@NonNull final int[] tree, int slot, int delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /*
+     * Number of occupied slots up to and including slot.
+     */
+    private static int prefixSum(@NonNull final int[] tree, int slot) {
+        int sum = 0;
+        for (int i = slot + 1; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
     }
 }
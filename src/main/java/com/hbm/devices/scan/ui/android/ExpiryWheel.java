@@ -0,0 +1,201 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchical timing wheel tracking the expiry of keys. Scheduling, refreshing and removing a
+ * key is O(1), no matter how many keys are tracked; expired keys are collected in batches by
+ * {@link #advance(List)}.
+ *
+ * <p>Time is divided into ticks of {@link #TICK_MILLIS}. The wheel has three levels of 64
+ * slots: the first covers the next 64 ticks with one slot per tick, the second the next 4096
+ * ticks with one slot per 64 ticks, the third the next 262144 ticks. When the first level
+ * wraps, the due slot of the level above is cascaded down. Keys scheduled further ahead are
+ * parked in the last level and cascaded until they are due.</p>
+ *
+ * <p>Not thread safe.</p>
+ *
+ * @param <K> the type of the tracked keys.
+ */
+final class ExpiryWheel<K> {
+
+    static final long TICK_MILLIS = 100;
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 3;
+    private static final long MAX_TICKS = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    @NonNull
+    private final Clock clock;
+    @NonNull
+    private final Node<K>[][] wheel;
+    @NonNull
+    private final Map<K, Node<K>> nodes;
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    ExpiryWheel(@NonNull Clock clock) {
+        this.clock = clock;
+        wheel = (Node<K>[][]) new Node[LEVELS][SLOTS];
+        for (final Node<K>[] level : wheel) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                level[slot] = new Node<>(null);
+            }
+        }
+        nodes = new HashMap<>();
+        currentTick = clock.millis() / TICK_MILLIS;
+    }
+
+    /**
+     * Lets {@code key} expire {@code timeoutMillis} from now. A key that is already scheduled
+     * is moved to its new deadline.
+     */
+    void schedule(@NonNull K key, long timeoutMillis) {
+        Node<K> node = nodes.get(key);
+        if (node == null) {
+            node = new Node<>(key);
+            nodes.put(key, node);
+        } else {
+            node.unlink();
+        }
+        final long deadlineMillis = clock.millis() + timeoutMillis;
+        node.deadline = Math.max((deadlineMillis + TICK_MILLIS - 1) / TICK_MILLIS, currentTick + 1);
+        link(node);
+    }
+
+    /**
+     * @return true if the key was scheduled.
+     */
+    boolean remove(@NonNull K key) {
+        final Node<K> node = nodes.remove(key);
+        if (node == null) {
+            return false;
+        }
+        node.unlink();
+        return true;
+    }
+
+    int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Advances the wheel to the current time and removes all keys expired in the meantime.
+     *
+     * @param expired receives the expired keys.
+     * @return the number of expired keys.
+     */
+    int advance(@NonNull List<K> expired) {
+        final long now = clock.millis() / TICK_MILLIS;
+        int count = 0;
+        while (currentTick < now) {
+            if (nodes.isEmpty()) {
+                currentTick = now;
+                break;
+            }
+            currentTick++;
+            if ((currentTick & SLOT_MASK) == 0) {
+                if (((currentTick >> SLOT_BITS) & SLOT_MASK) == 0) {
+                    cascade(wheel[2][(int) ((currentTick >> (2 * SLOT_BITS)) & SLOT_MASK)]);
+                }
+                cascade(wheel[1][(int) ((currentTick >> SLOT_BITS) & SLOT_MASK)]);
+            }
+            final Node<K> head = wheel[0][(int) (currentTick & SLOT_MASK)];
+            while (head.next != head) {
+                final Node<K> node = head.next;
+                node.unlink();
+                nodes.remove(node.key);
+                expired.add(node.key);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void cascade(@NonNull Node<K> head) {
+        Node<K> node = head.next;
+        head.next = head;
+        head.previous = head;
+        while (node != head) {
+            final Node<K> next = node.next;
+            link(node);
+            node = next;
+        }
+    }
+
+    private void link(@NonNull Node<K> node) {
+        final long delta = node.deadline - currentTick;
+        final Node<K> head;
+        if (delta < SLOTS) {
+            head = wheel[0][(int) (node.deadline & SLOT_MASK)];
+        } else if (delta < SLOTS * SLOTS) {
+            head = wheel[1][(int) ((node.deadline >> SLOT_BITS) & SLOT_MASK)];
+        } else {
+            final long parked = Math.min(node.deadline, currentTick + MAX_TICKS);
+            head = wheel[2][(int) ((parked >> (2 * SLOT_BITS)) & SLOT_MASK)];
+        }
+        node.previous = head.previous;
+        node.next = head;
+        head.previous.next = node;
+        head.previous = node;
+    }
+
+    /*
+     * Entry of a circular doubly linked slot list. Every slot has a head node without key.
+     */
+    private static final class Node<K> {
+        final K key;
+        long deadline;
+        @NonNull
+        Node<K> previous;
+        @NonNull
+        Node<K> next;
+
+        Node(K key) {
+            this.key = key;
+            previous = this;
+            next = this;
+        }
+
+        void unlink() {
+            previous.next = next;
+            next.previous = previous;
+            previous = this;
+            next = this;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Caches the compressed form of the texts of an export, so a device that didn't change
+ * since the last export isn't compressed again.
+ *
+ * <p>Every text is deflated on its own, with a reset window, and ends with a sync flush.
+ * Such segments are byte aligned and don't refer to each other, so any sequence of them
+ * followed by {@link #FINAL_BLOCK} is a valid raw deflate stream. A segment also knows
+ * the CRC-32, length and SHA-1 digest of its UTF-8 encoded text. A cache is not thread
+ * safe.</p>
+ *
+ * <p>The compressed bytes kept are bounded: a {@link #sweep()} finding more than the given
+ * number of them drops compressed bytes until the cache is within its bound again. Those
+ * segments are compressed again when they are exported next time.</p>
+ */
+final class ExportSegmentCache {
+
+    /**
+     * An empty, final block with fixed Huffman codes, terminating a sequence of segments.
+     */
+    static final byte[] FINAL_BLOCK = {0x03, 0x00};
+
+    @NonNull
+    private final Map<String, Segment> segments = new HashMap<>();
+    @NonNull
+    private final Utf8Sink sink = new Utf8Sink();
+    @NonNull
+    private final Buffer encoded = new Buffer();
+    @NonNull
+    private final Buffer compressed = new Buffer();
+    @NonNull
+    private final byte[] chunk = new byte[8192];
+    @NonNull
+    private final MessageDigest sha1;
+    @NonNull
+    private final CRC32 crc = new CRC32();
+    @NonNull
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final long maxCachedBytes;
+    private long cachedBytes;
+    private long generation;
+    private long deflatedSegments;
+
+    /**
+     * @param maxCachedBytes the number of compressed bytes kept after a {@link #sweep()}.
+     */
+    ExportSegmentCache(long maxCachedBytes) {
+        this.maxCachedBytes = maxCachedBytes;
+        try {
+            sha1 = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the segment of {@code text}, digested but possibly not yet deflated.
+     */
+    @NonNull
+    Segment get(@NonNull String text) throws IOException {
+        Segment segment = segments.get(text);
+        if (segment == null) {
+            segment = create(text);
+            segment.cached = true;
+            segments.put(text, segment);
+        }
+        segment.generation = generation;
+        return segment;
+    }
+
+    /**
+     * Returns a segment of {@code text} that isn't cached.
+     */
+    @NonNull
+    Segment createDeflated(@NonNull String text) throws IOException {
+        final Segment segment = create(text);
+        deflate(segment);
+        return segment;
+    }
+
+    /**
+     * Makes sure the compressed bytes of {@code segment} are available.
+     */
+    void deflate(@NonNull Segment segment) throws IOException {
+        if (segment.deflated != null) {
+            return;
+        }
+        encode(segment.text);
+        deflater.reset();
+        deflater.setInput(encoded.array(), 0, encoded.size());
+        compressed.reset();
+        int count;
+        do {
+            count = deflater.deflate(chunk, 0, chunk.length, Deflater.SYNC_FLUSH);
+            compressed.write(chunk, 0, count);
+        } while (count == chunk.length);
+        segment.deflated = compressed.toByteArray();
+        deflatedSegments++;
+        if (segment.cached) {
+            cachedBytes += segment.deflated.length;
+        }
+    }
+
+    /**
+     * Drops all segments not returned by {@link #get(String)} since the last sweep. Then drops
+     * compressed bytes until no more than the bound of the cache are left.
+     */
+    void sweep() {
+        final Iterator<Segment> iterator = segments.values().iterator();
+        while (iterator.hasNext()) {
+            final Segment segment = iterator.next();
+            if (segment.generation != generation) {
+                release(segment);
+                iterator.remove();
+            }
+        }
+        if (cachedBytes > maxCachedBytes) {
+            for (final Segment segment : segments.values()) {
+                release(segment);
+                if (cachedBytes <= maxCachedBytes) {
+                    break;
+                }
+            }
+        }
+        generation++;
+    }
+
+    /**
+     * Drops all segments.
+     */
+    void clear() {
+        segments.clear();
+        cachedBytes = 0;
+    }
+
+    int size() {
+        return segments.size();
+    }
+
+    long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    long getDeflatedSegments() {
+        return deflatedSegments;
+    }
+
+    private void release(@NonNull Segment segment) {
+        if (segment.deflated != null) {
+            cachedBytes -= segment.deflated.length;
+            segment.deflated = null;
+        }
+    }
+
+    @NonNull
+    private Segment create(@NonNull String text) throws IOException {
+        encode(text);
+        crc.reset();
+        crc.update(encoded.array(), 0, encoded.size());
+        sha1.update(encoded.array(), 0, encoded.size());
+        return new Segment(text, sha1.digest(), (int) crc.getValue(), encoded.size());
+    }
+
+    private void encode(@NonNull String text) throws IOException {
+        encoded.reset();
+        sink.open(encoded);
+        sink.write(text);
+        sink.flush();
+    }
+
+    static final class Segment {
+        @NonNull
+        final String text;
+        @NonNull
+        final byte[] digest;
+        final int crc;
+        final int length;
+        @Nullable
+        byte[] deflated;
+        long generation;
+        boolean cached;
+
+        Segment(@NonNull String text, @NonNull byte[] digest, int crc, int length) {
+            this.text = text;
+            this.digest = digest;
+            this.crc = crc;
+            this.length = length;
+        }
+    }
+
+    /**
+     * A byte array stream that exposes its buffer instead of copying it.
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+        Buffer() {
+            super(4096);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InterfaceAddress;
+import java.net.NetworkInterface;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the interfaces the announce group is joined on and counts received
+ * datagrams per interface.
+ *
+ * <p>{@link #update(Iterable, Group)} joins the group on new interfaces and drops it on
+ * vanished ones. Joining can fail for a single interface, e.g. one that went down after it
+ * was listed. Such an interface is skipped and joined again on the next update, the other
+ * interfaces are not affected. Failed joins are only counted, see {@link #getJoinFailures()}.</p>
+ *
+ * <p>Updates and counting happen on the receiver thread, the getters may be called from any
+ * thread.</p>
+ */
+final class InterfaceMemberships {
+
+    private static final int MAX_CACHED_SENDERS = 1024;
+
+    /**
+     * Joins the multicast group on a single interface.
+     */
+    interface Group {
+        @NonNull
+        Key join(@NonNull String interfaceName) throws IOException;
+    }
+
+    /**
+     * Membership of the multicast group on a single interface.
+     */
+    interface Key {
+        boolean isValid();
+
+        void drop();
+    }
+
+    @NonNull
+    private final Map<String, Membership> memberships = new ConcurrentHashMap<>();
+    /*
+     * Membership a sender was accounted to, null for unassigned senders. Only used on the
+     * receiver thread.
+     */
+    @NonNull
+    private final Map<InetAddress, Membership> senders = new HashMap<>();
+    private volatile long unassignedPackets;
+    private volatile long joinFailures;
+
+    void update(@NonNull Iterable<Interface> interfaces, @NonNull Group group) {
+        senders.clear();
+        final Set<String> present = new HashSet<>();
+        for (final Interface networkInterface : interfaces) {
+            present.add(networkInterface.name);
+            final Membership membership = memberships.get(networkInterface.name);
+            if (membership != null && membership.key.isValid()) {
+                membership.networkInterface = networkInterface;
+                continue;
+            }
+            try {
+                memberships.put(networkInterface.name,
+                        new Membership(networkInterface, group.join(networkInterface.name)));
+            } catch (IOException e) {
+                joinFailures++;
+                memberships.remove(networkInterface.name);
+            }
+        }
+        for (final Membership membership : new ArrayList<>(memberships.values())) {
+            if (!present.contains(membership.networkInterface.name)) {
+                membership.key.drop();
+                memberships.remove(membership.networkInterface.name);
+            }
+        }
+    }
+
+    /**
+     * Accounts a datagram to the interface whose subnet contains the sender. A datagram
+     * channel does not tell on which interface a datagram arrived.
+     */
+    void count(@NonNull byte[] sender) {
+        account(find(sender));
+    }
+
+    /**
+     * Like {@link #count(byte[])}, but remembers the interface found for a sender, so repeated
+     * datagrams from the same device neither copy its address nor scan the subnets again.
+     */
+    void count(@NonNull InetAddress sender) {
+        Membership membership = senders.get(sender);
+        if (membership == null && !senders.containsKey(sender)) {
+            if (senders.size() >= MAX_CACHED_SENDERS) {
+                senders.clear();
+            }
+            membership = find(sender.getAddress());
+            senders.put(sender, membership);
+        }
+        account(membership);
+    }
+
+    @Nullable
+    private Membership find(@NonNull byte[] sender) {
+        for (final Membership membership : memberships.values()) {
+            if (membership.networkInterface.contains(sender)) {
+                return membership;
+            }
+        }
+        return null;
+    }
+
+    private void account(@Nullable Membership membership) {
+        if (membership == null) {
+            unassignedPackets++;
+        } else {
+            membership.packets++;
+        }
+    }
+
+    /**
+     * @return the names of the interfaces the group is currently joined on.
+     */
+    @NonNull
+    Set<String> getJoinedInterfaces() {
+        return Collections.unmodifiableSet(new HashSet<>(memberships.keySet()));
+    }
+
+    /**
+     * @return the number of datagrams received so far per interface name. Only interfaces the
+     * group is currently joined on are reported.
+     */
+    @NonNull
+    Map<String, Long> getPacketCounts() {
+        final Map<String, Long> counts = new HashMap<>();
+        for (final Membership membership : memberships.values()) {
+            counts.put(membership.networkInterface.name, membership.packets);
+        }
+        return counts;
+    }
+
+    /**
+     * @return the number of datagrams whose sender is not in the subnet of any joined
+     * interface.
+     */
+    long getUnassignedPackets() {
+        return unassignedPackets;
+    }
+
+    /**
+     * @return the number of times joining the group on an interface failed.
+     */
+    long getJoinFailures() {
+        return joinFailures;
+    }
+
+    /**
+     * Name and subnets of a network interface.
+     */
+    static final class Interface {
+        @NonNull
+        final String name;
+        @NonNull
+        private final byte[][] addresses;
+        @NonNull
+        private final int[] prefixLengths;
+
+        Interface(@NonNull String name, @NonNull byte[][] addresses, @NonNull int[] prefixLengths) {
+            this.name = name;
+            this.addresses = addresses;
+            this.prefixLengths = prefixLengths;
+        }
+
+        @NonNull
+        static Interface of(@NonNull NetworkInterface networkInterface) {
+            final List<InterfaceAddress> interfaceAddresses = networkInterface.getInterfaceAddresses();
+            final List<byte[]> addresses = new ArrayList<>(interfaceAddresses.size());
+            final List<Integer> prefixLengths = new ArrayList<>(interfaceAddresses.size());
+            for (final InterfaceAddress interfaceAddress : interfaceAddresses) {
+                final InetAddress address = interfaceAddress.getAddress();
+                if (address != null) {
+                    addresses.add(address.getAddress());
+                    prefixLengths.add((int) interfaceAddress.getNetworkPrefixLength());
+                }
+            }
+            final int[] prefixes = new int[prefixLengths.size()];
+            for (int i = 0; i < prefixes.length; i++) {
+                prefixes[i] = prefixLengths.get(i);
+            }
+            return new Interface(networkInterface.getName(), addresses.toArray(new byte[0][]), prefixes);
+        }
+
+        boolean contains(@NonNull byte[] sender) {
+            for (int i = 0; i < addresses.length; i++) {
+                if (sameSubnet(addresses[i], sender, prefixLengths[i])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean sameSubnet(@NonNull byte[] address, @NonNull byte[] sender, int prefixLength) {
+            if (address.length != sender.length) {
+                return false;
+            }
+            final int fullBytes = prefixLength / 8;
+            for (int i = 0; i < fullBytes; i++) {
+                if (address[i] != sender[i]) {
+                    return false;
+                }
+            }
+            final int remainingBits = prefixLength % 8;
+            if (remainingBits == 0) {
+                return true;
+            }
+            final int mask = (0xff00 >> remainingBits) & 0xff;
+            return ((address[fullBytes] ^ sender[fullBytes]) & mask) == 0;
+        }
+    }
+
+    private static final class Membership {
+        @NonNull
+        final Key key;
+        @NonNull
+        volatile Interface networkInterface;
+        volatile long packets;
+
+        Membership(@NonNull Interface networkInterface, @NonNull Key key) {
+            this.networkInterface = networkInterface;
+            this.key = key;
+        }
+    }
+}
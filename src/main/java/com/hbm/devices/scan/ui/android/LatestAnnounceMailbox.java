@@ -0,0 +1,144 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.hbm.devices.scan.announce.Announce;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pipeline stage holding at most one pending announce per communication path. Only the
+ * newest announce of a device matters, so an announce queued while an older one of the same
+ * path is still pending replaces the older one. The replaced announce is counted as
+ * superseded. The number of pending announces is therefore bounded by the number of devices,
+ * no matter how far the stage falls behind.
+ *
+ * <p>Paths are handled in the order they became pending; a replaced announce keeps the
+ * position of the one it replaced. Besides handling announces, the worker runs a periodic
+ * task every {@code tickMillis}.</p>
+ */
+final class LatestAnnounceMailbox implements Runnable {
+
+    @NonNull
+    private final Map<CommunicationPath, Announce> pending;
+    @NonNull
+    private final Stage.Handler<Announce> handler;
+    @NonNull
+    private final StageMetrics metrics;
+    @NonNull
+    private final Runnable tick;
+    private final long tickNanos;
+    private long supersededAnnounces;
+
+    LatestAnnounceMailbox(@NonNull String name, @NonNull Stage.Handler<Announce> handler,
+                          long tickMillis, @NonNull Runnable tick) {
+        this.pending = new LinkedHashMap<>();
+        this.handler = handler;
+        this.metrics = new StageMetrics(name);
+        this.tick = tick;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+    }
+
+    synchronized void put(@NonNull Announce announce) {
+        if (pending.put(new CommunicationPath(announce), announce) != null) {
+            supersededAnnounces++;
+            metrics.dropped();
+        }
+        metrics.queued(pending.size());
+        notifyAll();
+    }
+
+    /**
+     * Handles pending announces until the worker thread is interrupted. Announces still
+     * pending then are discarded.
+     */
+    @Override
+    public void run() {
+        try {
+            long nextTick = System.nanoTime() + tickNanos;
+            while (!Thread.currentThread().isInterrupted()) {
+                final Announce announce = poll(nextTick - System.nanoTime());
+                if (announce != null) {
+                    final long start = System.nanoTime();
+                    handler.handle(announce);
+                    metrics.processed(size(), System.nanoTime() - start);
+                }
+                final long now = System.nanoTime();
+                if (now - nextTick >= 0) {
+                    tick.run();
+                    nextTick = now + tickNanos;
+                }
+            }
+        } catch (InterruptedException e) {
+            // pipeline is shutting down.
+        } finally {
+            synchronized (this) {
+                pending.clear();
+            }
+        }
+    }
+
+    synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * @return the number of announces replaced by a newer one before they were handled.
+     */
+    synchronized long getSupersededAnnounces() {
+        return supersededAnnounces;
+    }
+
+    @NonNull
+    StageMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Nullable
+    private synchronized Announce poll(long timeoutNanos) throws InterruptedException {
+        final long deadline = System.nanoTime() + timeoutNanos;
+        while (pending.isEmpty()) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        final Iterator<Announce> iterator = pending.values().iterator();
+        final Announce announce = iterator.next();
+        iterator.remove();
+        return announce;
+    }
+}
@@ -49,23 +49,30 @@ import java.util.Collection;
 final class ModuleCardClickListener implements View.OnClickListener {
 
     private static final String WTX_MOBILE_PACKAGE = "com.hbm.devices.wtx.ui.android";
-    private final String moduleType;
-    private final Announce announce;
+    @NonNull
+    private final DeviceViewHolder holder;
 
-    ModuleCardClickListener(final Announce announce, final String moduleType) {
-        this.announce = announce;
-        this.moduleType = moduleType;
+    /**
+     * @param holder the card clicked, its announce at the time of the click is opened.
+     */
+    ModuleCardClickListener(@NonNull final DeviceViewHolder holder) {
+        this.holder = holder;
     }
 
     @Override
     public void onClick(@NonNull View view) {
+        final Announce announce = holder.announce;
+        if (announce == null) {
+            return;
+        }
+        final String moduleType = announce.getParams().getDevice().getType();
         if ("WTX120".equals(moduleType) || ("WTX110".equals(moduleType))) {
             final Context context = view.getContext();
             final PackageManager pm = context.getPackageManager();
             boolean isInstalled = isPackageInstalled(pm);
             if (isInstalled) {
                 final Intent sendIntent = pm.getLaunchIntentForPackage(WTX_MOBILE_PACKAGE);
-                fillIntent(sendIntent);
+                fillIntent(sendIntent, announce);
                 context.startActivity(sendIntent);
             }
         } else {
@@ -73,7 +80,7 @@ final class ModuleCardClickListener implements View.OnClickListener {
         }
     }
 
-    private void fillIntent(@NonNull Intent sendIntent) {
+    private void fillIntent(@NonNull Intent sendIntent, @NonNull Announce announce) {
         final Collection<IPEntry> announceAddresses = announce.getParams().getNetSettings()
                 .getInterface().getIPList();
 
@@ -31,28 +31,48 @@ package com.hbm.devices.scan.ui.android;
 import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
 import androidx.recyclerview.widget.RecyclerView;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
 import com.hbm.devices.scan.announce.Announce;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 final class ModuleListAdapter extends RecyclerView.Adapter<DeviceViewHolder> implements DisplayNotifier {
 
-    @NonNull
-    private final List<Announce> filteredAnnounces;
+    private static final int PREFETCHED_DEVICES = 32;
+
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "device list diff");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final DeviceListFragment listFragment;
     @NonNull
-    private final DisplayUpdateEventGenerator eventGenerator;
+    private final BackgroundDiffer differ;
+    @NonNull
+    private final StableIdRegistry stableIds;
+    @NonNull
+    private final DevicePhotoCache photos;
+    @NonNull
+    private final DeviceImageResolver images;
 
-    ModuleListAdapter(DeviceListFragment fragment) {
+    ModuleListAdapter(DeviceListFragment fragment, @NonNull DevicePhotoCache photos,
+                      @NonNull DeviceImageResolver images) {
         super();
-        eventGenerator = new DisplayUpdateEventGenerator(this);
-        filteredAnnounces = new ArrayList<>();
+        this.photos = photos;
+        this.images = images;
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        differ = new BackgroundDiffer(DIFF_EXECUTOR, mainHandler::post, this, this::onListApplied);
+        stableIds = new StableIdRegistry();
         listFragment = fragment;
         this.setHasStableIds(true);
 
@@ -62,24 +82,47 @@ final class ModuleListAdapter extends RecyclerView.Adapter<DeviceViewHolder> imp
     @Override
     public DeviceViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
         final View itemView = LayoutInflater.from(parent.getContext()).inflate(R.layout.dev_item, parent, false);
-        return new DeviceViewHolder((CardView) itemView);
+        return new DeviceViewHolder((CardView) itemView, photos);
     }
 
     @Override
     public void onBindViewHolder(DeviceViewHolder holder, int position) {
-        final Announce announce = filteredAnnounces.get(position);
-        holder.bind(announce);
+        final Announce announce = differ.getList().get(position);
+        holder.bind(announce, trackConfirmation(announce));
+    }
+
+    /*
+     * The payloads are the CardFields bits of changes, a bind without payloads binds the
+     * whole card.
+     */
+    @Override
+    public void onBindViewHolder(@NonNull DeviceViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        int changedFields = CardFields.NONE;
+        for (final Object payload : payloads) {
+            changedFields |= (Integer) payload;
+        }
+        final Announce announce = differ.getList().get(position);
+        holder.bindChanges(announce, trackConfirmation(announce), changedFields);
+    }
+
+    private boolean trackConfirmation(@NonNull Announce announce) {
+        final boolean confirmed = listFragment.isConfirmed(announce);
+        stableIds.setShownUnconfirmed(announce, !confirmed);
+        return confirmed;
     }
 
     @Override
     public long getItemId(int position) {
-        final Announce announce = filteredAnnounces.get(position);
-        return announce.hashCode();
+        return stableIds.getId(differ.getList().get(position));
     }
 
     @Override
     public int getItemCount() {
-        return filteredAnnounces.size();
+        return differ.getList().size();
     }
 
     @Override
@@ -93,8 +136,8 @@ final class ModuleListAdapter extends RecyclerView.Adapter<DeviceViewHolder> imp
     }
 
     @Override
-    public void notifyChangeAt(int position) {
-        notifyItemChanged(position);
+    public void notifyChangeAt(int position, int changedFields) {
+        notifyItemChanged(position, changedFields);
     }
 
     @Override
@@ -102,8 +145,47 @@ final class ModuleListAdapter extends RecyclerView.Adapter<DeviceViewHolder> imp
         notifyItemMoved(fromPosition, toPosition);
     }
 
-    void notifyList(List<Announce> newFilteredAnnounces) {
-        eventGenerator.compareLists(filteredAnnounces, newFilteredAnnounces);
+    /**
+     * Diffs against the displayed list in the background. The list is displayed once the
+     * notifications are replayed on the main thread, unless a newer list was passed before.
+     */
+    void notifyList(@NonNull List<Announce> newFilteredAnnounces) {
+        differ.submit(newFilteredAnnounces);
+    }
+
+    private void onListApplied() {
+        stableIds.retain(listFragment.getCollectedAnnounces(), differ.getList());
+        prefetchPhotos();
+        if (stableIds.getShownUnconfirmedCount() > 0) {
+            rebindConfirmed();
+        }
+    }
+
+    /*
+     * Decodes the photos of the devices at the top of the list before their cards are bound.
+     */
+    private void prefetchPhotos() {
+        final List<Announce> announces = differ.getList();
+        final Set<Integer> resources = new HashSet<>();
+        for (int i = 0; i < Math.min(PREFETCHED_DEVICES, announces.size()); i++) {
+            resources.add(images.resolve(announces.get(i).getParams().getDevice()));
+        }
+        photos.prefetch(resources);
+    }
+
+    /*
+     * A cached device confirmed by an identical announce is no change for the event generator,
+     * so rows still showing a device as unconfirmed are rebound here.
+     */
+    private void rebindConfirmed() {
+        final List<Announce> filteredAnnounces = differ.getList();
+        final int count = filteredAnnounces.size();
+        for (int i = 0; i < count; i++) {
+            final Announce announce = filteredAnnounces.get(i);
+            if (stableIds.isShownUnconfirmed(announce) && listFragment.isConfirmed(announce)) {
+                notifyItemChanged(i, CardFields.CONFIRMATION);
+            }
+        }
     }
 
     void setFilterString(String filterString) {
@@ -111,7 +193,7 @@ final class ModuleListAdapter extends RecyclerView.Adapter<DeviceViewHolder> imp
     }
 
     List<Announce> getFilteredAnnounces() {
-        return Collections.unmodifiableList(filteredAnnounces);
+        return differ.getList();
     }
 
     boolean isPaused() {
@@ -0,0 +1,344 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.hbm.devices.scan.announce.Announce;
+import com.hbm.devices.scan.ui.android.DeviceSnapshot.Entry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable hash array mapped trie indexing the entries of a {@link DeviceSnapshot} by
+ * communication path. Updates copy only the nodes on the path to the changed entry.
+ */
+final class PathTrie {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final int MAX_SHIFT = 30;
+
+    static final PathTrie EMPTY = new PathTrie(new Node(0, new Object[0]));
+
+    @NonNull
+    private final Node root;
+
+    private PathTrie(@NonNull Node root) {
+        this.root = root;
+    }
+
+    @Nullable
+    Entry get(@NonNull CommunicationPath path) {
+        return get(path.hashCode(), path.getAnnounce());
+    }
+
+    /**
+     * Like {@link #get(CommunicationPath)}, without creating a path for the announce.
+     */
+    @Nullable
+    Entry get(@NonNull Announce announce) {
+        return get(CommunicationPath.hash(announce), announce);
+    }
+
+    @Nullable
+    private Entry get(int hash, @NonNull Announce announce) {
+        Object node = root;
+        for (int shift = 0; ; shift += BITS) {
+            if (node instanceof Node) {
+                final Node bitmapNode = (Node) node;
+                final int bit = bit(hash, shift);
+                if ((bitmapNode.bitmap & bit) == 0) {
+                    return null;
+                }
+                node = bitmapNode.children[bitmapNode.index(bit)];
+            } else if (node instanceof Entry) {
+                final Entry entry = (Entry) node;
+                return entry.path.isPathOf(announce, hash) ? entry : null;
+            } else {
+                return ((CollisionNode) node).find(announce, hash);
+            }
+        }
+    }
+
+    /**
+     * Reports every entry added, removed or replaced from older to newer. Subtrees both tries
+     * share are skipped, so comparing two snapshots a few updates apart is cheap.
+     */
+    static void diff(@NonNull PathTrie older, @NonNull PathTrie newer, @NonNull DiffHandler handler) {
+        diff(older.root, newer.root, handler);
+    }
+
+    @NonNull
+    PathTrie put(@NonNull Entry entry) {
+        return new PathTrie(put(root, 0, entry));
+    }
+
+    @NonNull
+    PathTrie remove(@NonNull CommunicationPath path) {
+        final Node newRoot = remove(root, 0, path);
+        if (newRoot == root) {
+            return this;
+        }
+        return newRoot == null ? EMPTY : new PathTrie(newRoot);
+    }
+
+    @NonNull
+    private static Node put(@NonNull Node node, int shift, @NonNull Entry entry) {
+        final int bit = bit(entry.path.hashCode(), shift);
+        final int index = node.index(bit);
+        if ((node.bitmap & bit) == 0) {
+            final Object[] children = new Object[node.children.length + 1];
+            System.arraycopy(node.children, 0, children, 0, index);
+            children[index] = entry;
+            System.arraycopy(node.children, index, children, index + 1, node.children.length - index);
+            return new Node(node.bitmap | bit, children);
+        }
+
+        final Object child = node.children[index];
+        final Object newChild;
+        if (child instanceof Node) {
+            newChild = put((Node) child, shift + BITS, entry);
+        } else if (child instanceof Entry) {
+            final Entry old = (Entry) child;
+            newChild = old.path.equals(entry.path) ? entry : merge(old, entry, shift + BITS);
+        } else {
+            newChild = ((CollisionNode) child).put(entry);
+        }
+        return node.with(index, newChild);
+    }
+
+    /**
+     * Returns the node without the entry for {@code path}, the same node if there is no such
+     * entry, or {@code null} if the node became empty.
+     */
+    @Nullable
+    private static Node remove(@NonNull Node node, int shift, @NonNull CommunicationPath path) {
+        final int bit = bit(path.hashCode(), shift);
+        if ((node.bitmap & bit) == 0) {
+            return node;
+        }
+        final int index = node.index(bit);
+        final Object child = node.children[index];
+        Object newChild;
+        if (child instanceof Node) {
+            newChild = remove((Node) child, shift + BITS, path);
+            if (newChild instanceof Node && ((Node) newChild).isSingleEntry()) {
+                newChild = ((Node) newChild).children[0];
+            }
+        } else if (child instanceof Entry) {
+            newChild = path.equals(((Entry) child).path) ? null : child;
+        } else {
+            final CollisionNode collisions = (CollisionNode) child;
+            newChild = collisions.remove(path);
+            if (newChild != collisions && ((CollisionNode) newChild).entries.length == 1) {
+                newChild = ((CollisionNode) newChild).entries[0];
+            }
+        }
+
+        if (newChild == child) {
+            return node;
+        }
+        if (newChild != null) {
+            return node.with(index, newChild);
+        }
+        if (node.bitmap == bit) {
+            return null;
+        }
+        final Object[] children = new Object[node.children.length - 1];
+        System.arraycopy(node.children, 0, children, 0, index);
+        System.arraycopy(node.children, index + 1, children, index, children.length - index);
+        return new Node(node.bitmap & ~bit, children);
+    }
+
+    @NonNull
+    private static Object merge(@NonNull Entry first, @NonNull Entry second, int shift) {
+        if (shift > MAX_SHIFT) {
+            return new CollisionNode(new Entry[]{first, second});
+        }
+        final int firstBit = bit(first.path.hashCode(), shift);
+        final int secondBit = bit(second.path.hashCode(), shift);
+        if (firstBit == secondBit) {
+            return new Node(firstBit, new Object[]{merge(first, second, shift + BITS)});
+        }
+        final Object[] children = Integer.compareUnsigned(firstBit, secondBit) < 0
+                ? new Object[]{first, second} : new Object[]{second, first};
+        return new Node(firstBit | secondBit, children);
+    }
+
+    private static void diff(@Nullable Object older, @Nullable Object newer, @NonNull DiffHandler handler) {
+        if (older == newer) {
+            return;
+        }
+        if (older instanceof Node && newer instanceof Node) {
+            final Node olderNode = (Node) older;
+            final Node newerNode = (Node) newer;
+            int bits = olderNode.bitmap | newerNode.bitmap;
+            while (bits != 0) {
+                final int bit = bits & -bits;
+                bits &= ~bit;
+                diff((olderNode.bitmap & bit) == 0 ? null : olderNode.children[olderNode.index(bit)],
+                        (newerNode.bitmap & bit) == 0 ? null : newerNode.children[newerNode.index(bit)], handler);
+            }
+            return;
+        }
+
+        final List<Entry> olderEntries = new ArrayList<>();
+        collect(older, olderEntries);
+        final List<Entry> newerEntries = new ArrayList<>();
+        collect(newer, newerEntries);
+        for (final Entry entry : newerEntries) {
+            final Entry old = find(olderEntries, entry.path);
+            if (old == null) {
+                handler.added(entry);
+            } else if (old != entry) {
+                handler.replaced(old, entry);
+            }
+        }
+        for (final Entry entry : olderEntries) {
+            if (find(newerEntries, entry.path) == null) {
+                handler.removed(entry);
+            }
+        }
+    }
+
+    private static void collect(@Nullable Object node, @NonNull List<Entry> entries) {
+        if (node instanceof Node) {
+            for (final Object child : ((Node) node).children) {
+                collect(child, entries);
+            }
+        } else if (node instanceof Entry) {
+            entries.add((Entry) node);
+        } else if (node instanceof CollisionNode) {
+            for (final Entry entry : ((CollisionNode) node).entries) {
+                entries.add(entry);
+            }
+        }
+    }
+
+    @Nullable
+    private static Entry find(@NonNull List<Entry> entries, @NonNull CommunicationPath path) {
+        for (final Entry entry : entries) {
+            if (path.equals(entry.path)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    interface DiffHandler {
+        void added(@NonNull Entry entry);
+
+        void removed(@NonNull Entry entry);
+
+        void replaced(@NonNull Entry older, @NonNull Entry newer);
+    }
+
+    private static final class Node {
+        final int bitmap;
+        @NonNull
+        final Object[] children;
+
+        Node(int bitmap, @NonNull Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        boolean isSingleEntry() {
+            return children.length == 1 && children[0] instanceof Entry;
+        }
+
+        @NonNull
+        Node with(int index, @NonNull Object child) {
+            final Object[] copy = children.clone();
+            copy[index] = child;
+            return new Node(bitmap, copy);
+        }
+    }
+
+    /**
+     * Holds entries whose communication paths have the same hash code.
+     */
+    private static final class CollisionNode {
+        @NonNull
+        final Entry[] entries;
+
+        CollisionNode(@NonNull Entry[] entries) {
+            this.entries = entries;
+        }
+
+        @Nullable
+        Entry find(@NonNull Announce announce, int hash) {
+            for (final Entry entry : entries) {
+                if (entry.path.isPathOf(announce, hash)) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        @NonNull
+        CollisionNode put(@NonNull Entry entry) {
+            for (int i = 0; i < entries.length; i++) {
+                if (entry.path.equals(entries[i].path)) {
+                    final Entry[] copy = entries.clone();
+                    copy[i] = entry;
+                    return new CollisionNode(copy);
+                }
+            }
+            final Entry[] copy = new Entry[entries.length + 1];
+            System.arraycopy(entries, 0, copy, 0, entries.length);
+            copy[entries.length] = entry;
+            return new CollisionNode(copy);
+        }
+
+        @NonNull
+        CollisionNode remove(@NonNull CommunicationPath path) {
+            for (int i = 0; i < entries.length; i++) {
+                if (path.equals(entries[i].path)) {
+                    final Entry[] copy = new Entry[entries.length - 1];
+                    System.arraycopy(entries, 0, copy, 0, i);
+                    System.arraycopy(entries, i + 1, copy, i, copy.length - i);
+                    return new CollisionNode(copy);
+                }
+            }
+            return this;
+        }
+    }
+}
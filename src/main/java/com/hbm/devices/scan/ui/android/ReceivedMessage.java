@@ -0,0 +1,102 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A datagram received into a pooled direct buffer. The content is only decoded to a String
+ * if somebody asks for it via {@link #toString()}, e.g. because the message has to be parsed.
+ *
+ * <p>A message is reference counted. The receiver holds one reference while it notifies its
+ * observers; an observer that keeps the message beyond the notification has to
+ * {@link #retain()} it and {@link #release()} it when done.</p>
+ */
+final class ReceivedMessage {
+
+    @NonNull
+    private final ByteBuffer buffer;
+    @NonNull
+    private final BlockingQueue<ReceivedMessage> pool;
+    @NonNull
+    private final AtomicInteger references;
+
+    ReceivedMessage(int capacity, @NonNull BlockingQueue<ReceivedMessage> pool) {
+        buffer = ByteBuffer.allocateDirect(capacity);
+        this.pool = pool;
+        references = new AtomicInteger();
+    }
+
+    @NonNull
+    ByteBuffer prepareReceive() {
+        references.set(1);
+        buffer.clear();
+        return buffer;
+    }
+
+    void received() {
+        buffer.flip();
+    }
+
+    /**
+     * @return the received bytes from position 0 to the limit of the buffer. Only absolute
+     * reads must be used on the returned buffer.
+     */
+    @NonNull
+    ByteBuffer content() {
+        return buffer;
+    }
+
+    @NonNull
+    ReceivedMessage retain() {
+        references.incrementAndGet();
+        return this;
+    }
+
+    /**
+     * Drops a reference. The last release hands the message back to the pool of its receiver;
+     * the message must not be accessed after releasing it.
+     */
+    void release() {
+        if (references.decrementAndGet() == 0) {
+            pool.offer(this);
+        }
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return StandardCharsets.UTF_8.decode(buffer.duplicate()).toString();
+    }
+}
@@ -158,6 +158,10 @@ public final class ScanActivity extends AppCompatActivity {
                 sharer.handleShare(announces);
                 return true;
 
+            case R.id.action_scan_statistics:
+                showScanStatistics();
+                return true;
+
             case android.R.id.home:
                 drawer.open();
                 return true;
@@ -173,6 +177,14 @@ public final class ScanActivity extends AppCompatActivity {
         super.onDestroy();
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            AnnounceSharer.trimMemory();
+        }
+    }
+
     @Override
     public void onBackPressed() {
         if (drawer.isOpen()) {
@@ -203,7 +215,7 @@ public final class ScanActivity extends AppCompatActivity {
     }
 
     private void setDeviceListAdapter() {
-        adapter = new ModuleListAdapter(listFragment);
+        adapter = new ModuleListAdapter(listFragment, DevicePhotoCache.get(this), DeviceImageResolver.get(this));
         devicesView.setAdapter(adapter);
         listFragment.setAdapter(adapter);
     }
@@ -230,6 +242,15 @@ public final class ScanActivity extends AppCompatActivity {
         }
     }
 
+    private void showScanStatistics() {
+        final String statistics = listFragment == null ? null : listFragment.getScanStatistics();
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.menu_scan_statistics)
+                .setMessage(statistics == null ? getString(R.string.no_scan_running) : statistics)
+                .setNeutralButton(android.R.string.ok, null)
+                .show();
+    }
+
     private static boolean kernelSupportsMulticast() {
         final File igmp = new File("/proc/net/", "igmp");
         return igmp.exists();
@@ -0,0 +1,278 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.hbm.devices.scan.AbstractMessageReceiver;
+import com.hbm.devices.scan.announce.Announce;
+import com.hbm.devices.scan.announce.AnnounceDeserializer;
+import com.hbm.devices.scan.announce.AnnounceReceiver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scans for devices in four stages. The receive, parse and device state stages block for
+ * their input and run on dedicated threads; the publish stage only runs briefly when a
+ * snapshot is due and uses a scheduler thread:
+ * <ol>
+ *     <li>receive: reads announce messages and queues them for parsing without waiting.
+ *     If parsing falls behind, messages are dropped instead of stalling the reception;
+ *     devices re-send their announces every few seconds anyway.</li>
+ *     <li>parse: deduplicates and deserializes the messages.</li>
+ *     <li>device state: tracks new, updated and lost devices in a {@link DeviceTracker} and
+ *     builds the device snapshots. Lost devices are swept every {@link #SWEEP_INTERVAL_MS}.
+ *     Parsed announces wait for this stage in a {@link LatestAnnounceMailbox}, so if the
+ *     stage falls behind only the newest announce of every device is kept.</li>
+ *     <li>publish: coalesces snapshots and hands them to the device list.</li>
+ * </ol>
+ *
+ * <p>If a {@link DeviceCache} is given, the device state stage restores the cached devices
+ * before it handles the first announce.</p>
+ */
+final class ScanPipeline {
+
+    static final int PARSE_QUEUE_CAPACITY = 16;
+    static final long SWEEP_INTERVAL_MS = 500;
+
+    /*
+     * Every message waiting for the parse stage holds a receive buffer, one more is being
+     * parsed and another one is being received into.
+     */
+    private static final int RECEIVE_BUFFERS = PARSE_QUEUE_CAPACITY + 2;
+
+    @NonNull
+    private final ScheduledExecutorService publisher;
+    @NonNull
+    private final List<Thread> threads = new ArrayList<>(3);
+    @NonNull
+    private final AbstractMessageReceiver messageReceiver;
+    @NonNull
+    private final SnapshotCoalescer coalescer;
+    @NonNull
+    private final StageMetrics receiveMetrics;
+    @NonNull
+    private final Stage<Object> parseStage;
+    @NonNull
+    private final LatestAnnounceMailbox stateStage;
+    @NonNull
+    private final AnnounceDeduplicator deduplicator;
+    @NonNull
+    private final DeviceTracker tracker;
+    @Nullable
+    private final DeviceCache cache;
+    private long startNanos;
+    private volatile long timeToFirstDeviceNanos = -1;
+    private volatile int largestBurst;
+    private boolean started;
+    private volatile boolean closed;
+
+    ScanPipeline(@NonNull DeviceListFragment listFragment, boolean useFakeMessages,
+                 FakeMessageType fakeMessageType, @Nullable DeviceCache cache) throws IOException {
+        this.cache = cache;
+        publisher = Executors.newSingleThreadScheduledExecutor(runnable -> newThread(runnable, "device publish"));
+
+        coalescer = new SnapshotCoalescer((snapshot, mergedEvents) -> {
+            // close() holds the same lock, so no snapshot is published once it returned.
+            synchronized (ScanPipeline.this) {
+                if (closed) {
+                    return;
+                }
+                if (timeToFirstDeviceNanos < 0 && !snapshot.isEmpty()) {
+                    timeToFirstDeviceNanos = System.nanoTime() - startNanos;
+                }
+                if (mergedEvents > largestBurst) {
+                    largestBurst = mergedEvents;
+                }
+                listFragment.notify(snapshot);
+            }
+        }, SnapshotCoalescer.DEFAULT_WINDOW_MILLIS, SnapshotCoalescer.DEFAULT_MAX_LATENCY_MILLIS, Clock.SYSTEM,
+                (task, delayMillis) -> {
+                    try {
+                        publisher.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+                    } catch (RejectedExecutionException e) {
+                        // the pipeline was closed, nothing is published anymore.
+                    }
+                });
+        tracker = new DeviceTracker(coalescer, Clock.SYSTEM);
+        stateStage = new LatestAnnounceMailbox("device state", tracker::announced,
+                SWEEP_INTERVAL_MS, tracker::sweep);
+
+        deduplicator = new AnnounceDeduplicator(new AnnounceDeserializer());
+        deduplicator.addObserver((observable, announce) -> stateStage.put((Announce) announce));
+        parseStage = new Stage<>("parse", PARSE_QUEUE_CAPACITY, message -> {
+            try {
+                deduplicator.update(null, message);
+            } finally {
+                release(message);
+            }
+        }, ScanPipeline::release);
+
+        receiveMetrics = new StageMetrics("receive");
+        if (useFakeMessages) {
+            messageReceiver = new FakeMessageReceiver(fakeMessageType, listFragment.getActivity());
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            messageReceiver = new DatagramAnnounceReceiver(RECEIVE_BUFFERS);
+        } else {
+            messageReceiver = new AnnounceReceiver();
+        }
+        messageReceiver.addObserver((observable, message) -> received(message));
+    }
+
+    synchronized void start() {
+        if (started || closed) {
+            throw new IllegalStateException("scan pipeline can only be started once");
+        }
+        started = true;
+        startNanos = System.nanoTime();
+        threads.add(newThread(() -> {
+            if (cache != null) {
+                tracker.restore(cache.load());
+            }
+            stateStage.run();
+        }, "device state"));
+        threads.add(newThread(parseStage, "announce parse"));
+        threads.add(newThread(messageReceiver, "announce receive"));
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+    }
+
+    /**
+     * Shuts the pipeline down without waiting for it. The receiver is closed first, so no
+     * further messages enter the pipeline. Then all stages are interrupted, discarding queued
+     * messages, and the device list does not get any further updates, even from a stage that
+     * is still finishing. Calling close more than once has no effect.
+     */
+    synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        messageReceiver.deleteObservers();
+        messageReceiver.close();
+        coalescer.close();
+        publisher.shutdownNow();
+        for (final Thread thread : threads) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * @return the time from {@link #start()} until the device list was first handed a device,
+     * either restored from the cache or announced, or -1 if no device was handed out yet.
+     */
+    long getTimeToFirstDeviceMillis() {
+        final long nanos = timeToFirstDeviceNanos;
+        return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * @return the metrics of the receive, parse, device state and publish stages.
+     */
+    @NonNull
+    List<StageMetrics> getMetrics() {
+        final List<StageMetrics> metrics = new ArrayList<>(4);
+        metrics.add(receiveMetrics);
+        metrics.add(parseStage.getMetrics());
+        metrics.add(stateStage.getMetrics());
+        metrics.add(coalescer.getMetrics());
+        return metrics;
+    }
+
+    /**
+     * @return a human readable summary of the pipeline metrics, one item per line.
+     */
+    @NonNull
+    String getStatistics() {
+        final StringBuilder builder = new StringBuilder();
+        final long timeToFirstDevice = getTimeToFirstDeviceMillis();
+        builder.append("time to first device: ")
+                .append(timeToFirstDevice < 0 ? "none yet" : timeToFirstDevice + " ms").append('\n');
+        for (final StageMetrics metrics : getMetrics()) {
+            builder.append(metrics).append('\n');
+        }
+        builder.append("parsed ").append(deduplicator.getParsedMessages()).append(" announces, skipped ")
+                .append(deduplicator.getSuppressedMessages()).append(" unchanged ones\n");
+        builder.append("coalesced ").append(coalescer.getEventCount()).append(" device events into ")
+                .append(coalescer.getFlushCount()).append(" snapshots, largest burst ").append(largestBurst)
+                .append('\n');
+        if (messageReceiver instanceof DatagramAnnounceReceiver) {
+            final InterfaceMemberships memberships = ((DatagramAnnounceReceiver) messageReceiver).getMemberships();
+            for (final Map.Entry<String, Long> count : new TreeMap<>(memberships.getPacketCounts()).entrySet()) {
+                builder.append("received ").append(count.getValue()).append(" datagrams on ")
+                        .append(count.getKey()).append('\n');
+            }
+            builder.append("received ").append(memberships.getUnassignedPackets())
+                    .append(" datagrams from other subnets, ").append(memberships.getJoinFailures())
+                    .append(" failed group joins\n");
+        }
+        return builder.toString();
+    }
+
+    private void received(@NonNull Object message) {
+        final long start = System.nanoTime();
+        if (message instanceof ReceivedMessage) {
+            ((ReceivedMessage) message).retain();
+        }
+        if (!parseStage.offer(message)) {
+            release(message);
+        }
+        receiveMetrics.processed(0, System.nanoTime() - start);
+    }
+
+    @NonNull
+    private static Thread newThread(@NonNull Runnable runnable, @NonNull String name) {
+        final Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static void release(@NonNull Object message) {
+        if (message instanceof ReceivedMessage) {
+            ((ReceivedMessage) message).release();
+        }
+    }
+}
+
+enum FakeMessageType {
+    CONSTANT_NUMBER_OF_DEVICES,
+    NEW_DEVICE_EVERY_SECOND
+}
@@ -0,0 +1,160 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Folds bursts of device events into a single published snapshot.
+ *
+ * <p>A snapshot is published once no further event arrived for {@code windowMillis}, but at
+ * the latest {@code maxLatencyMillis} after the first event of a burst. Only the most recent
+ * snapshot of a burst is handed to the listener, together with the number of events it
+ * merged.</p>
+ */
+final class SnapshotCoalescer {
+
+    static final long DEFAULT_WINDOW_MILLIS = 100;
+    static final long DEFAULT_MAX_LATENCY_MILLIS = 250;
+
+    interface Listener {
+        void onSnapshot(@NonNull DeviceSnapshot snapshot, int mergedEvents);
+    }
+
+    /**
+     * Runs the flushes of the coalescer, replaceable in tests.
+     */
+    interface Scheduler {
+        void schedule(@NonNull Runnable task, long delayMillis);
+    }
+
+    @NonNull
+    private final Listener listener;
+    @NonNull
+    private final Clock clock;
+    @NonNull
+    private final Scheduler scheduler;
+    @NonNull
+    private final StageMetrics metrics;
+    private final long windowMillis;
+    private final long maxLatencyMillis;
+
+    private DeviceSnapshot pending;
+    private int pendingEvents;
+    private long burstStart;
+    private long lastEvent;
+    private boolean flushScheduled;
+    private boolean closed;
+
+    private long flushCount;
+    private long eventCount;
+
+    SnapshotCoalescer(@NonNull Listener listener, long windowMillis, long maxLatencyMillis,
+                      @NonNull Clock clock, @NonNull Scheduler scheduler) {
+        if (windowMillis <= 0 || maxLatencyMillis < windowMillis) {
+            throw new IllegalArgumentException("window must be positive and not exceed max latency");
+        }
+        this.listener = listener;
+        this.windowMillis = windowMillis;
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.clock = clock;
+        this.scheduler = scheduler;
+        metrics = new StageMetrics("publish");
+    }
+
+    synchronized void submit(@NonNull DeviceSnapshot snapshot) {
+        final long now = clock.millis();
+        pending = snapshot;
+        pendingEvents++;
+        eventCount++;
+        lastEvent = now;
+        metrics.queued(pendingEvents);
+        if (!flushScheduled && !closed) {
+            flushScheduled = true;
+            burstStart = now;
+            scheduler.schedule(this::flush, windowMillis);
+        }
+    }
+
+    /**
+     * Stops publishing. No flush is scheduled after close and pending snapshots are discarded.
+     */
+    synchronized void close() {
+        closed = true;
+    }
+
+    /**
+     * @return the metrics of the publish stage. The depth is the number of events waiting to be
+     * published, the service time the time spent in the listener.
+     */
+    @NonNull
+    StageMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the number of published snapshots.
+     */
+    synchronized long getFlushCount() {
+        return flushCount;
+    }
+
+    /**
+     * @return the number of submitted snapshots.
+     */
+    synchronized long getEventCount() {
+        return eventCount;
+    }
+
+    private void flush() {
+        final DeviceSnapshot snapshot;
+        final int mergedEvents;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            final long now = clock.millis();
+            final long quietRemaining = windowMillis - (now - lastEvent);
+            final long latencyRemaining = maxLatencyMillis - (now - burstStart);
+            if (quietRemaining > 0 && latencyRemaining > 0) {
+                scheduler.schedule(this::flush, Math.min(quietRemaining, latencyRemaining));
+                return;
+            }
+            snapshot = pending;
+            mergedEvents = pendingEvents;
+            pending = null;
+            pendingEvents = 0;
+            flushScheduled = false;
+            flushCount++;
+        }
+        final long start = System.nanoTime();
+        listener.onSnapshot(snapshot, mergedEvents);
+        metrics.processed(0, System.nanoTime() - start);
+    }
+}
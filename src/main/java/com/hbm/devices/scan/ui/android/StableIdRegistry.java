@@ -0,0 +1,156 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+
+import com.hbm.devices.scan.announce.Announce;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns every communication path a RecyclerView item id that stays the same while the
+ * device is known, however its announces change and whether or not a filter hides it. Ids are allocated in increasing order
+ * and never reused, so they can't collide.
+ *
+ * <p>The ids of the displayed announces are also looked up by announce identity, so binding
+ * a card neither creates a path nor hashes one. Along with its id the registry remembers if
+ * the card of a device shows it as unconfirmed.</p>
+ */
+final class StableIdRegistry {
+
+    @NonNull
+    private final Map<CommunicationPath, Id> ids = new HashMap<>();
+    @NonNull
+    private final Map<Announce, Id> byAnnounce = new IdentityHashMap<>();
+    private long nextId;
+    private long generation;
+    private int shownUnconfirmed;
+
+    long getId(@NonNull Announce announce) {
+        return find(announce).value;
+    }
+
+    /**
+     * Remembers if the card of the device shows it as unconfirmed.
+     */
+    void setShownUnconfirmed(@NonNull Announce announce, boolean unconfirmed) {
+        final Id id = find(announce);
+        if (id.shownUnconfirmed != unconfirmed) {
+            id.shownUnconfirmed = unconfirmed;
+            shownUnconfirmed += unconfirmed ? 1 : -1;
+        }
+    }
+
+    boolean isShownUnconfirmed(@NonNull Announce announce) {
+        return shownUnconfirmed > 0 && find(announce).shownUnconfirmed;
+    }
+
+    /**
+     * @return the number of displayed devices whose cards show them as unconfirmed.
+     */
+    int getShownUnconfirmedCount() {
+        return shownUnconfirmed;
+    }
+
+    /**
+     * Releases the ids of all devices neither known nor displayed. A released device gets a
+     * new id if it is displayed again. Devices only known keep their ids, but their cards no
+     * longer count as shown.
+     *
+     * @param known all devices of the current snapshot, including the ones a filter hides.
+     * @param displayed the devices in the list.
+     */
+    void retain(@NonNull Collection<Announce> known, @NonNull List<Announce> displayed) {
+        generation++;
+        byAnnounce.clear();
+        for (final Announce announce : displayed) {
+            final Id id = ids.get(new CommunicationPath(announce));
+            if (id != null) {
+                id.generation = generation;
+                id.displayedGeneration = generation;
+                byAnnounce.put(announce, id);
+            }
+        }
+        for (final Announce announce : known) {
+            final Id id = ids.get(new CommunicationPath(announce));
+            if (id != null) {
+                id.generation = generation;
+            }
+        }
+        final Iterator<Id> iterator = ids.values().iterator();
+        while (iterator.hasNext()) {
+            final Id id = iterator.next();
+            if (id.displayedGeneration != generation && id.shownUnconfirmed) {
+                id.shownUnconfirmed = false;
+                shownUnconfirmed--;
+            }
+            if (id.generation != generation) {
+                iterator.remove();
+            }
+        }
+    }
+
+    int size() {
+        return ids.size();
+    }
+
+    @NonNull
+    private Id find(@NonNull Announce announce) {
+        Id id = byAnnounce.get(announce);
+        if (id == null) {
+            final CommunicationPath path = new CommunicationPath(announce);
+            id = ids.get(path);
+            if (id == null) {
+                id = new Id(nextId++);
+                ids.put(path, id);
+            }
+            byAnnounce.put(announce, id);
+        }
+        id.generation = generation;
+        id.displayedGeneration = generation;
+        return id;
+    }
+
+    private static final class Id {
+        final long value;
+        long generation;
+        long displayedGeneration;
+        boolean shownUnconfirmed;
+
+        Id(long value) {
+            this.value = value;
+        }
+    }
+}
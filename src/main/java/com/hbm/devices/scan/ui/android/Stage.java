@@ -0,0 +1,113 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A pipeline stage: a bounded queue drained by a single worker running {@link #run()}.
+ * Items are handled in the order they were queued.
+ *
+ * @param <T> the type of the items handled by the stage.
+ */
+final class Stage<T> implements Runnable {
+
+    interface Handler<T> {
+        void handle(@NonNull T item);
+    }
+
+    @NonNull
+    private final BlockingQueue<T> queue;
+    @NonNull
+    private final Handler<T> handler;
+    @NonNull
+    private final Handler<T> discarded;
+    @NonNull
+    private final StageMetrics metrics;
+
+    Stage(@NonNull String name, int capacity, @NonNull Handler<T> handler) {
+        this(name, capacity, handler, item -> { });
+    }
+
+    /**
+     * @param discarded gets every item still queued when the stage stops, e.g. to release
+     *                  resources held by the item.
+     */
+    Stage(@NonNull String name, int capacity, @NonNull Handler<T> handler, @NonNull Handler<T> discarded) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.handler = handler;
+        this.discarded = discarded;
+        this.metrics = new StageMetrics(name);
+    }
+
+    /**
+     * Queues an item without waiting.
+     *
+     * @return false if the queue is full. The item is counted as dropped then.
+     */
+    boolean offer(@NonNull T item) {
+        if (queue.offer(item)) {
+            metrics.queued(queue.size());
+            return true;
+        }
+        metrics.dropped();
+        return false;
+    }
+
+    /**
+     * Handles queued items until the worker thread is interrupted. Items still queued then
+     * are handed to the discard handler.
+     */
+    @Override
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                final T item = queue.take();
+                final long start = System.nanoTime();
+                handler.handle(item);
+                metrics.processed(queue.size(), System.nanoTime() - start);
+            }
+        } catch (InterruptedException e) {
+            // pipeline is shutting down.
+        } finally {
+            T item;
+            while ((item = queue.poll()) != null) {
+                discarded.handle(item);
+            }
+        }
+    }
+
+    @NonNull
+    StageMetrics getMetrics() {
+        return metrics;
+    }
+}
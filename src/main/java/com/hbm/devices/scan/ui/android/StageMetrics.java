@@ -0,0 +1,119 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue depth and service time statistics of a single {@link ScanPipeline} stage.
+ */
+final class StageMetrics {
+
+    @NonNull
+    private final String name;
+
+    private int depth;
+    private int maxDepth;
+    private long processed;
+    private long dropped;
+    private long totalServiceNanos;
+    private long maxServiceNanos;
+
+    StageMetrics(@NonNull String name) {
+        this.name = name;
+    }
+
+    @NonNull
+    String getName() {
+        return name;
+    }
+
+    synchronized void queued(int currentDepth) {
+        depth = currentDepth;
+        if (currentDepth > maxDepth) {
+            maxDepth = currentDepth;
+        }
+    }
+
+    synchronized void dropped() {
+        dropped++;
+    }
+
+    synchronized void processed(int currentDepth, long serviceNanos) {
+        depth = currentDepth;
+        processed++;
+        totalServiceNanos += serviceNanos;
+        if (serviceNanos > maxServiceNanos) {
+            maxServiceNanos = serviceNanos;
+        }
+    }
+
+    /**
+     * @return the number of items waiting for the stage when it was last accessed.
+     */
+    synchronized int getDepth() {
+        return depth;
+    }
+
+    synchronized int getMaxDepth() {
+        return maxDepth;
+    }
+
+    synchronized long getProcessed() {
+        return processed;
+    }
+
+    /**
+     * @return the number of items dropped by the stage, either because its queue was full or
+     * because a newer item replaced them.
+     */
+    synchronized long getDropped() {
+        return dropped;
+    }
+
+    synchronized long getAverageServiceNanos() {
+        return processed == 0 ? 0 : totalServiceNanos / processed;
+    }
+
+    synchronized long getMaxServiceNanos() {
+        return maxServiceNanos;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "%s: depth %d (max %d), processed %d, dropped %d, service %d/%d us (avg/max)",
+                name, depth, maxDepth, processed, dropped,
+                TimeUnit.NANOSECONDS.toMicros(getAverageServiceNanos()),
+                TimeUnit.NANOSECONDS.toMicros(maxServiceNanos));
+    }
+}
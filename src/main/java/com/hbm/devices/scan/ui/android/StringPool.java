@@ -0,0 +1,69 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Canonicalizes equal strings to a single instance. Unlike {@link String#intern()} the pool
+ * is owned by the caller and bounded: once it holds more than {@link #MAX_STRINGS} strings it
+ * starts over, so strings of devices gone long ago do not pile up.
+ *
+ * <p>Not thread safe.</p>
+ */
+final class StringPool {
+
+    static final int MAX_STRINGS = 16384;
+
+    @NonNull
+    private final Map<String, String> strings = new HashMap<>();
+
+    /**
+     * @return the pooled instance equal to {@code string}.
+     */
+    @NonNull
+    String intern(@NonNull String string) {
+        final String pooled = strings.get(string);
+        if (pooled != null) {
+            return pooled;
+        }
+        if (strings.size() >= MAX_STRINGS) {
+            strings.clear();
+        }
+        strings.put(string, string);
+        return string;
+    }
+
+    int size() {
+        return strings.size();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes strings as UTF-8 directly into an output stream.
+ *
+ * <p>The character and byte buffers are allocated once, so writing a string neither
+ * copies it into a new byte array nor allocates per call. Malformed input is replaced
+ * like {@link String#getBytes(Charset)} does. A sink is not thread safe.</p>
+ */
+final class Utf8Sink {
+
+    private static final int CHAR_BUFFER_SIZE = 2048;
+    private static final int BYTE_BUFFER_SIZE = 8192;
+
+    @NonNull
+    private final CharsetEncoder encoder;
+    @NonNull
+    private final CharBuffer chars;
+    @NonNull
+    private final ByteBuffer bytes;
+    private OutputStream out;
+
+    Utf8Sink() {
+        encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+        bytes = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+    }
+
+    /**
+     * Directs all further output to {@code stream}. Anything still pending for the
+     * previous stream must have been written by {@link #flush()} before.
+     */
+    void open(@NonNull OutputStream stream) {
+        out = stream;
+        encoder.reset();
+        chars.clear();
+        bytes.clear();
+    }
+
+    void write(@NonNull String string) throws IOException {
+        final int length = string.length();
+        int offset = 0;
+        while (offset < length) {
+            final int count = Math.min(chars.remaining(), length - offset);
+            string.getChars(offset, offset + count, chars.array(), chars.arrayOffset() + chars.position());
+            chars.position(chars.position() + count);
+            offset += count;
+            chars.flip();
+            encode(false);
+            // Keeps a trailing high surrogate for the next chunk.
+            chars.compact();
+        }
+    }
+
+    /**
+     * Encodes any pending characters and writes all bytes to the stream. The stream
+     * itself is not flushed.
+     */
+    void flush() throws IOException {
+        chars.flip();
+        encode(true);
+        chars.clear();
+        while (encoder.flush(bytes).isOverflow()) {
+            drain();
+        }
+        drain();
+        encoder.reset();
+    }
+
+    private void encode(boolean endOfInput) throws IOException {
+        while (true) {
+            final CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isOverflow()) {
+                drain();
+            } else if (result.isError()) {
+                result.throwException();
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        if (bytes.position() > 0) {
+            out.write(bytes.array(), bytes.arrayOffset(), bytes.position());
+            bytes.clear();
+        }
+    }
+}
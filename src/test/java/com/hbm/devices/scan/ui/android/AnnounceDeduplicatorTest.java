@@ -0,0 +1,148 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import com.hbm.devices.scan.announce.Announce;
+import com.hbm.devices.scan.announce.AnnounceDeserializer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AnnounceDeduplicatorTest {
+
+    private static final long ANNOUNCE_PERIOD_MS = 5000;
+
+    private TestAnnounces announces;
+    private AnnounceDeserializer parser;
+    private AnnounceDeduplicator deduplicator;
+    private List<Announce> parsed;
+    private List<Announce> forwarded;
+
+    @Before
+    public void setUp() {
+        announces = new TestAnnounces();
+        parser = new AnnounceDeserializer();
+        parsed = new ArrayList<>();
+        parser.addObserver((observable, announce) -> parsed.add((Announce) announce));
+        deduplicator = new AnnounceDeduplicator(parser);
+        forwarded = new ArrayList<>();
+        deduplicator.addObserver((observable, announce) -> forwarded.add((Announce) announce));
+    }
+
+    @Test
+    public void identicalMessagesAreParsedOnce() {
+        final String message = announces.create(1).getJSONString();
+        for (int i = 0; i < 100; i++) {
+            deduplicator.update(null, message);
+        }
+        assertEquals(1, parsed.size());
+        assertEquals(100, forwarded.size());
+        for (final Announce announce : forwarded) {
+            assertSame(parsed.get(0), announce);
+        }
+        assertEquals(1, deduplicator.getParsedMessages());
+        assertEquals(99, deduplicator.getSuppressedMessages());
+    }
+
+    @Test
+    public void changedMessageIsParsedAgain() {
+        deduplicator.update(null, announces.create(1).getJSONString());
+        deduplicator.update(null, announces.create(1, "2.0.0").getJSONString());
+        deduplicator.update(null, announces.create(1, "2.0.0").getJSONString());
+        assertEquals(2, parsed.size());
+        assertNotSame(forwarded.get(0), forwarded.get(1));
+        assertSame(forwarded.get(1), forwarded.get(2));
+        assertEquals(1, deduplicator.getSuppressedMessages());
+    }
+
+    @Test
+    public void receivedMessagesAreComparedInTheirBuffer() {
+        final BlockingQueue<ReceivedMessage> pool = new ArrayBlockingQueue<>(1);
+        final ReceivedMessage message = new ReceivedMessage(4096, pool);
+        final byte[] bytes = announces.create(1).getJSONString().getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < 10; i++) {
+            message.prepareReceive().put(bytes);
+            message.received();
+            deduplicator.update(null, message);
+            message.release();
+        }
+        assertEquals(1, deduplicator.getParsedMessages());
+        assertEquals(9, deduplicator.getSuppressedMessages());
+        assertEquals(10, forwarded.size());
+    }
+
+    /*
+     * Under the constant number of devices load every device re-sends the same announce. The
+     * expiration of the devices has to be refreshed although nothing is parsed anymore.
+     */
+    @Test
+    public void unchangedAnnouncesRefreshExpiryWithoutParsing() {
+        final FakeScheduler scheduler = new FakeScheduler();
+        final List<DeviceSnapshot> snapshots = new ArrayList<>();
+        final SnapshotCoalescer coalescer = new SnapshotCoalescer((snapshot, merged) -> snapshots.add(snapshot),
+                SnapshotCoalescer.DEFAULT_WINDOW_MILLIS, SnapshotCoalescer.DEFAULT_MAX_LATENCY_MILLIS,
+                scheduler, scheduler);
+        final DeviceTracker tracker = new DeviceTracker(coalescer, scheduler);
+        deduplicator.addObserver((observable, announce) -> tracker.announced((Announce) announce));
+
+        final int devices = 10;
+        final List<String> messages = new ArrayList<>();
+        for (int i = 0; i < devices; i++) {
+            messages.add(announces.create(i).getJSONString());
+        }
+        for (long time = 0; time <= 60000; time += ANNOUNCE_PERIOD_MS) {
+            scheduler.advanceTo(time);
+            for (final String message : messages) {
+                deduplicator.update(null, message);
+            }
+            tracker.sweep();
+        }
+        scheduler.advanceTo(61000);
+        assertEquals(devices, snapshots.get(snapshots.size() - 1).size());
+        assertEquals(devices, deduplicator.getParsedMessages());
+        assertEquals(devices * 12, deduplicator.getSuppressedMessages());
+
+        final long expiration = DeviceTracker.DEFAULT_EXPIRATION_SECONDS * 1000;
+        scheduler.advanceTo(60000 + expiration + 1000);
+        tracker.sweep();
+        scheduler.advanceTo(60000 + expiration + 2000);
+        assertTrue(snapshots.get(snapshots.size() - 1).isEmpty());
+    }
+}
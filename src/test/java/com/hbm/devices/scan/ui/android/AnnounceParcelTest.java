@@ -0,0 +1,115 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import com.hbm.devices.scan.announce.Announce;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AnnounceParcelTest {
+
+    private TestAnnounces announces;
+
+    @Before
+    public void setUp() {
+        announces = new TestAnnounces();
+    }
+
+    @Test
+    public void testAnnounceIsHandedOverByReference() {
+        final Announce announce = announces.create(1);
+        assertSame(announce, new AnnounceParcel(announce).getAnnounce());
+    }
+
+    @Test
+    public void testRegistryKeepsRecentAnnounces() {
+        final long first = AnnounceRegistry.register(announces.create(1));
+        long last = first;
+        for (int i = 0; i < AnnounceRegistry.MAX_ANNOUNCES; i++) {
+            last = AnnounceRegistry.register(announces.create(i));
+        }
+        assertNull(AnnounceRegistry.lookup(AnnounceRegistry.EPOCH, first));
+        assertNotNull(AnnounceRegistry.lookup(AnnounceRegistry.EPOCH, last));
+    }
+
+    @Test
+    public void testHandleOfOtherProcessIsNotResolved() {
+        final Announce announce = announces.create(1);
+        final long handle = AnnounceRegistry.register(announce);
+        assertSame(announce, AnnounceRegistry.lookup(AnnounceRegistry.EPOCH, handle));
+        assertNull(AnnounceRegistry.lookup(AnnounceRegistry.EPOCH + 1, handle));
+    }
+
+    @Test
+    public void testMessageFallback() {
+        final Announce announce = announces.create(1);
+        final String json = announce.getJSONString();
+        assertEquals(json, AnnounceParcel.decode(AnnounceParcel.encode(json)));
+        assertEquals(announce, AnnounceParcel.parse(AnnounceParcel.decode(AnnounceParcel.encode(json))));
+        assertNotNull(AnnounceParcel.forSavedState(announce).getAnnounce());
+    }
+
+    @Test
+    public void testCorruptMessageIsRejected() {
+        final byte[] message = AnnounceParcel.encode(announces.create(1).getJSONString());
+        final byte[] truncated = new byte[message.length / 2];
+        System.arraycopy(message, 0, truncated, 0, truncated.length);
+        assertNull(AnnounceParcel.decode(truncated));
+        assertNull(AnnounceParcel.decode(new byte[]{(byte) 0xff, (byte) 0xff, (byte) 0xff}));
+    }
+
+    /*
+     * The saved state fallback has to be much smaller than both the announce message and the
+     * serialized announce the activities used to get.
+     */
+    @Test
+    public void testSavedStateIsCompact() throws IOException {
+        final Announce announce = announces.create(1);
+        final ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(announce);
+        }
+        final int messageSize = announce.getJSONString().getBytes(StandardCharsets.UTF_8).length;
+        final int encodedSize = AnnounceParcel.encode(announce.getJSONString()).length;
+        assertTrue(encodedSize * 3 < messageSize);
+        assertTrue(encodedSize * 3 < serialized.size());
+    }
+}
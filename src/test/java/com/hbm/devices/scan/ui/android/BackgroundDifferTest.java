@@ -0,0 +1,168 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import com.hbm.devices.scan.announce.Announce;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BackgroundDifferTest implements DisplayNotifier {
+
+    private final QueuedExecutor worker = new QueuedExecutor();
+    private final QueuedExecutor mainThread = new QueuedExecutor();
+    private final List<Row> rows = new ArrayList<>();
+    private BackgroundDiffer differ;
+    private int appliedLists;
+
+    @Test
+    public void testStaleResultIsDiscarded() {
+        final TestAnnounces announces = new TestAnnounces();
+        final Announce first = announces.create(1);
+        final Announce second = announces.create(2);
+        final Announce third = announces.create(3);
+        differ = new BackgroundDiffer(worker, mainThread, this, () -> appliedLists++);
+
+        differ.submit(Arrays.asList(first, second));
+        worker.runAll();
+        differ.submit(Arrays.asList(second, third));
+        worker.runAll();
+        mainThread.runAll();
+
+        assertEquals(1, differ.getDiscardedResults());
+        assertEquals(1, appliedLists);
+        assertEquals(Arrays.asList(second, third), differ.getList());
+        assertEquals(differ.getList(), layout());
+    }
+
+    @Test
+    public void testResultsAreAppliedInTurn() {
+        final TestAnnounces announces = new TestAnnounces();
+        final Announce first = announces.create(1);
+        final Announce second = announces.create(2);
+        final Announce secondUpdate = announces.create(2, "5.0.0");
+        differ = new BackgroundDiffer(worker, mainThread, this, () -> appliedLists++);
+
+        differ.submit(Arrays.asList(first, second));
+        worker.runAll();
+        mainThread.runAll();
+        layout();
+        differ.submit(Arrays.asList(secondUpdate, first));
+        assertEquals(Arrays.asList(first, second), differ.getList());
+        worker.runAll();
+        mainThread.runAll();
+
+        assertEquals(0, differ.getDiscardedResults());
+        assertEquals(2, appliedLists);
+        assertEquals(Arrays.asList(secondUpdate, first), layout());
+    }
+
+    @Test
+    public void testSubmittedListIsCopied() {
+        final TestAnnounces announces = new TestAnnounces();
+        final List<Announce> submitted = new ArrayList<>();
+        submitted.add(announces.create(1));
+        differ = new BackgroundDiffer(worker, mainThread, this, () -> appliedLists++);
+
+        differ.submit(submitted);
+        submitted.add(announces.create(2));
+        worker.runAll();
+        mainThread.runAll();
+
+        assertEquals(1, differ.getList().size());
+        assertEquals(differ.getList(), layout());
+        assertTrue(worker.tasks.isEmpty());
+    }
+
+    /*
+     * Like a RecyclerView, rows inserted or changed are bound to the list only on the next
+     * layout, so positions of changes need not be valid in the final list.
+     */
+    private List<Announce> layout() {
+        final List<Announce> displayed = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            final Row row = rows.get(i);
+            if (row.dirty) {
+                row.announce = differ.getList().get(i);
+                row.dirty = false;
+            }
+            displayed.add(row.announce);
+        }
+        return displayed;
+    }
+
+    @Override
+    public void notifyRemoveAt(int position) {
+        rows.remove(position);
+    }
+
+    @Override
+    public void notifyAddAt(int position) {
+        rows.add(position, new Row());
+    }
+
+    @Override
+    public void notifyChangeAt(int position, int changedFields) {
+        rows.get(position).dirty = true;
+    }
+
+    @Override
+    public void notifyMoved(int fromPosition, int toPosition) {
+        rows.add(toPosition, rows.remove(fromPosition));
+    }
+
+    private static final class Row {
+        private Announce announce;
+        private boolean dirty = true;
+    }
+
+    private static final class QueuedExecutor implements Executor {
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.poll().run();
+            }
+        }
+    }
+}
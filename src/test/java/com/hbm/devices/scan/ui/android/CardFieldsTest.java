@@ -0,0 +1,81 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import com.hbm.devices.scan.announce.Announce;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CardFieldsTest implements DisplayNotifier {
+
+    private final TestAnnounces announces = new TestAnnounces();
+    private final List<Integer> changes = new ArrayList<>();
+
+    @Test
+    public void testChangedFields() {
+        final Announce announce = announces.create(1, "Rotor", "MX840B");
+        assertEquals(CardFields.NONE, CardFields.changed(announces.create(1), announces.create(1, "5.0.0")));
+        assertEquals(CardFields.NAME, CardFields.changed(announce, announces.create(1, "Stator", "MX840B")));
+        assertEquals(CardFields.TYPE | CardFields.PHOTO,
+                CardFields.changed(announce, announces.create(1, "Rotor", "MX410")));
+    }
+
+    @Test
+    public void testGeneratorPassesChangedFields() {
+        final List<Announce> oldList = new ArrayList<>(Arrays.asList(
+                announces.create(1, "Rotor", "MX840B"), announces.create(2), announces.create(3)));
+        final List<Announce> newList = Arrays.asList(
+                announces.create(1, "Stator", "MX840B"), announces.create(2, "5.0.0"), announces.create(3));
+        new DisplayUpdateEventGenerator(this).compareLists(oldList, newList);
+        assertEquals(Arrays.asList(CardFields.NAME, CardFields.NONE), changes);
+    }
+
+    @Override
+    public void notifyRemoveAt(int position) {
+    }
+
+    @Override
+    public void notifyAddAt(int position) {
+    }
+
+    @Override
+    public void notifyChangeAt(int position, int changedFields) {
+        changes.add(changedFields);
+    }
+
+    @Override
+    public void notifyMoved(int fromPosition, int toPosition) {
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import com.hbm.devices.scan.announce.Announce;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CardStateTest {
+
+    private static final String UNKNOWN = "Unknown";
+    private static final int NUMBER_OF_DEVICES = 1000;
+    private static final int ROUNDS = 20;
+
+    private TestAnnounces announces;
+    private DeviceImageResolver images;
+
+    @Before
+    public void setUp() throws IOException {
+        announces = new TestAnnounces();
+        images = DeviceImageResolverTest.loadAsset();
+    }
+
+    @Test
+    public void testReportsDifferingViews() {
+        final CardState state = new CardState(UNKNOWN, images);
+        final Announce rotor = announces.create(1, "Rotor", "MX840B");
+        assertEquals(CardFields.NAME | CardFields.TYPE | CardFields.UUID | CardFields.PHOTO, state.bind(rotor));
+        assertEquals(R.drawable.mx840b, state.getImageResource());
+        assertEquals(CardFields.NONE, state.bind(announces.create(1, "Rotor", "MX840B")));
+        assertEquals(CardFields.UUID, state.bind(announces.create(2, "Rotor", "MX840B")));
+        assertEquals(CardFields.NAME | CardFields.UUID, state.bind(announces.create(3, "", "MX840B")));
+        assertEquals(UNKNOWN, state.getName());
+        assertEquals(CardFields.TYPE | CardFields.PHOTO, state.bind(announces.create(3, "", "MX410")));
+        assertEquals(R.drawable.mx410, state.getImageResource());
+    }
+
+    @Test
+    public void testChangeBindOnlyComparesChangedFields() {
+        final CardState state = new CardState(UNKNOWN, images);
+        assertEquals(CardFields.DISPLAYED, state.bind(announces.create(1, "Rotor", "MX840B"), CardFields.NONE));
+        assertEquals(CardFields.NONE, state.bind(announces.create(1, "Stator", "MX410"), CardFields.NONE));
+        assertEquals("Rotor", state.getName());
+        assertEquals(CardFields.NAME, state.bind(announces.create(1, "Stator", "MX410"), CardFields.NAME));
+        assertEquals(CardFields.TYPE | CardFields.PHOTO,
+                state.bind(announces.create(1, "Stator", "MX410"), CardFields.TYPE | CardFields.PHOTO));
+        assertEquals(R.drawable.mx410, state.getImageResource());
+    }
+
+    /*
+     * Everything the adapter does when binding a card besides touching views: the item id, the
+     * confirmation lookup and tracking, and the card state.
+     */
+    @Test
+    public void testAdapterBindPathDoesNotAllocate() {
+        final AllocationCounter allocations = AllocationCounter.create();
+        final StringPool pool = new StringPool();
+        final List<Announce> devices = new ArrayList<>(NUMBER_OF_DEVICES);
+        DeviceSnapshot snapshot = DeviceSnapshot.EMPTY;
+        for (int i = 0; i < NUMBER_OF_DEVICES; i++) {
+            final Announce announce = announces.create(i, "Rotor", i % 2 == 0 ? "MX840B" : "MX410");
+            devices.add(announce);
+            snapshot = i % 4 == 0 ? snapshot.putUnconfirmed(announce, pool) : snapshot.put(announce, pool);
+        }
+        final StableIdRegistry ids = new StableIdRegistry();
+        ids.retain(snapshot, devices);
+        final CardState[] cards = {new CardState(UNKNOWN, images), new CardState(UNKNOWN, images)};
+        long checksum = bindAll(cards, devices, snapshot, ids);
+
+        final long before = allocations.allocatedBytes();
+        for (int round = 0; round < ROUNDS; round++) {
+            checksum += bindAll(cards, devices, snapshot, ids);
+        }
+        final long allocated = allocations.allocatedBytes() - before;
+        assertEquals("allocated " + allocated + " bytes, checksum " + checksum,
+                0, allocated / (ROUNDS * NUMBER_OF_DEVICES));
+        assertEquals(NUMBER_OF_DEVICES / 4, ids.getShownUnconfirmedCount());
+    }
+
+    /*
+     * Counts the bytes the binding thread allocates while cards are rebound to other devices,
+     * as they are during a fling through a long list.
+     */
+    @Test
+    public void testBindDoesNotAllocate() {
+        final AllocationCounter allocations = AllocationCounter.create();
+
+        final List<Announce> devices = new ArrayList<>(NUMBER_OF_DEVICES);
+        for (int i = 0; i < NUMBER_OF_DEVICES; i++) {
+            devices.add(announces.create(i, i % 3 == 0 ? "" : "Rotor", i % 2 == 0 ? "MX840B" : "MX410"));
+        }
+        final CardState[] cards = {new CardState(UNKNOWN, images), new CardState(UNKNOWN, images),
+            new CardState(UNKNOWN, images)};
+        int changes = bindAll(cards, devices);
+
+        final long before = allocations.allocatedBytes();
+        for (int round = 0; round < ROUNDS; round++) {
+            changes += bindAll(cards, devices);
+        }
+        final long allocated = allocations.allocatedBytes() - before;
+        assertEquals("allocated " + allocated + " bytes, " + changes + " views changed",
+                0, allocated / (ROUNDS * NUMBER_OF_DEVICES));
+    }
+
+    private static long bindAll(CardState[] cards, List<Announce> devices, DeviceSnapshot snapshot,
+                                StableIdRegistry ids) {
+        long checksum = 0;
+        for (int i = 0; i < devices.size(); i++) {
+            final Announce announce = devices.get(i);
+            final boolean confirmed = snapshot.isConfirmed(announce);
+            ids.setShownUnconfirmed(announce, !confirmed);
+            checksum += ids.getId(announce) + cards[i % cards.length].bind(announce);
+        }
+        return checksum;
+    }
+
+    private static int bindAll(CardState[] cards, List<Announce> devices) {
+        int changes = 0;
+        for (int i = 0; i < devices.size(); i++) {
+            changes += Integer.bitCount(cards[i % cards.length].bind(devices.get(i)));
+        }
+        return changes;
+    }
+}
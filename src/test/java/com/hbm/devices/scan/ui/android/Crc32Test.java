@@ -0,0 +1,64 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+
+public class Crc32Test {
+
+    @Test
+    public void combinesLikeContinuedChecksum() {
+        final Random random = new Random(4711);
+        final int[] lengths = {0, 1, 2, 7, 8, 255, 1024, 65537};
+        for (final int firstLength : lengths) {
+            for (final int secondLength : lengths) {
+                final byte[] first = new byte[firstLength];
+                final byte[] second = new byte[secondLength];
+                random.nextBytes(first);
+                random.nextBytes(second);
+
+                final CRC32 crc = new CRC32();
+                crc.update(first);
+                final int firstCrc = (int) crc.getValue();
+                crc.update(second);
+                final int expected = (int) crc.getValue();
+                crc.reset();
+                crc.update(second);
+                final int secondCrc = (int) crc.getValue();
+
+                assertEquals(expected, Crc32.combine(firstCrc, secondCrc, secondLength));
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import com.hbm.devices.scan.announce.Announce;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DeviceCacheTest {
+
+    private static final int NUMBER_OF_DEVICES = 1000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private TestAnnounces announces;
+    private DeviceCache cache;
+
+    @Before
+    public void setUp() {
+        announces = new TestAnnounces();
+        cache = new DeviceCache(folder.getRoot());
+    }
+
+    @Test
+    public void testMissingCacheIsEmpty() {
+        assertTrue(cache.load().isEmpty());
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        final List<Announce> devices = createDevices(3);
+        cache.save(devices);
+        assertEquals(devices, cache.load());
+    }
+
+    @Test
+    public void testCloseFinishesPendingSave() {
+        final List<Announce> devices = createDevices(NUMBER_OF_DEVICES);
+        cache.saveInBackground(devices);
+        cache.close();
+        cache.saveInBackground(createDevices(1));
+        assertEquals(devices, cache.load());
+    }
+
+    @Test
+    public void testTruncatedCacheYieldsCompleteDevices() throws IOException {
+        cache.save(createDevices(3));
+        final File file = new File(folder.getRoot(), DeviceCache.FILE_NAME);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+        assertEquals(2, cache.load().size());
+    }
+
+    @Test
+    public void testForeignFileIsIgnored() throws IOException {
+        final File file = new File(folder.getRoot(), DeviceCache.FILE_NAME);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.writeBytes("{\"not\":\"a device cache\"}");
+        }
+        assertTrue(cache.load().isEmpty());
+    }
+
+    @Test
+    public void testLoadWaitsForBackgroundSave() {
+        final List<Announce> devices = createDevices(NUMBER_OF_DEVICES);
+        cache.saveInBackground(devices);
+        assertEquals(devices, cache.load());
+    }
+
+    @Test
+    public void testMessagesAreCompressed() throws IOException {
+        final List<Announce> devices = createDevices(NUMBER_OF_DEVICES);
+        long messageBytes = 0;
+        for (final Announce announce : devices) {
+            messageBytes += announce.getJSONString().getBytes(StandardCharsets.UTF_8).length;
+        }
+        cache.save(devices);
+        final long fileBytes = new File(folder.getRoot(), DeviceCache.FILE_NAME).length();
+        assertTrue(fileBytes + " bytes cached for " + messageBytes + " message bytes",
+                fileBytes * 4 < messageBytes);
+    }
+
+    private List<Announce> createDevices(int count) {
+        final List<Announce> devices = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            devices.add(announces.create(i));
+        }
+        return devices;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class DeviceImageResolverTest {
+
+    private static final int FALLBACK = R.drawable.ic_no_device;
+
+    /**
+     * Loads the resolver from the asset of the app. Drawables are looked up in R, so every
+     * drawable the asset names has to exist.
+     */
+    static DeviceImageResolver loadAsset() throws IOException {
+        final File asset = new File("src/main/assets", DeviceImageResolver.ASSET);
+        try (final Reader reader = new InputStreamReader(new FileInputStream(asset), StandardCharsets.UTF_8)) {
+            return DeviceImageResolver.load(reader, DeviceImageResolverTest::drawable, FALLBACK);
+        }
+    }
+
+    private static int drawable(String name) {
+        try {
+            return R.drawable.class.getField(name).getInt(null);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            return 0;
+        }
+    }
+
+    @Test
+    public void testExactKeys() throws IOException {
+        final DeviceImageResolver resolver = loadAsset();
+        assertEquals(R.drawable.mx840b, resolver.resolve("MX840B"));
+        assertEquals(R.drawable.mx840, resolver.resolve("MX840"));
+        assertEquals(R.drawable.cx22brw, resolver.resolve("CX22BR-W"));
+        assertEquals(R.drawable.mx1609kb, resolver.resolve("MX1609"));
+    }
+
+    @Test
+    public void testLongestPrefixAndNormalization() throws IOException {
+        final DeviceImageResolver resolver = loadAsset();
+        assertEquals(R.drawable.mx1615br, resolver.resolve("MX1615B-R S31"));
+        assertEquals(R.drawable.pmx, resolver.resolve("PMX CODESYS"));
+        assertEquals(R.drawable.mx840, resolver.resolve("MX840A"));
+        assertEquals(R.drawable.mx840b, resolver.resolve("mx840b"));
+        assertEquals(R.drawable.mx840br, resolver.resolve("MX840B R"));
+        assertEquals(0, resolver.resolve("CX22"));
+        assertEquals(0, resolver.resolve("QuantumX"));
+        assertEquals(0, resolver.resolve(""));
+    }
+
+    @Test
+    public void testMemorizesHitsAndMisses() throws IOException {
+        final DeviceImageResolver resolver = loadAsset();
+        resolver.resolve("MX410");
+        resolver.resolve("MX410");
+        resolver.resolve("Unknown device");
+        resolver.resolve("Unknown device");
+        assertEquals(2, resolver.getMemoSize());
+    }
+
+    @Test
+    public void testLabelBeforeType() throws IOException {
+        final TestAnnounces announces = new TestAnnounces();
+        final DeviceImageResolver resolver = loadAsset();
+        assertEquals(R.drawable.mx410, resolver.resolve(announces.create(1).getParams().getDevice()));
+        assertEquals(FALLBACK, resolver.resolve(announces.create(1, "Rotor", "XY12").getParams().getDevice()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownDrawable() throws IOException {
+        DeviceImageResolver.load(new StringReader("MX999 = mx999\n"), DeviceImageResolverTest::drawable, FALLBACK);
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformedLine() throws IOException {
+        DeviceImageResolver.load(new StringReader("# photos\nMX410 mx410\n"), DeviceImageResolverTest::drawable,
+                FALLBACK);
+    }
+}
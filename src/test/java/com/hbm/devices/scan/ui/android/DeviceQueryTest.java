@@ -0,0 +1,156 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import com.hbm.devices.scan.announce.Announce;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DeviceQueryTest {
+
+    private Announce mx840;
+    private Announce mx410;
+    private Announce router;
+    private DeviceSnapshot snapshot;
+
+    @Before
+    public void setUp() {
+        final TestAnnounces announces = new TestAnnounces();
+        final StringPool pool = new StringPool();
+        mx840 = announces.create(1, "Rotor", "MX840B");
+        mx410 = announces.create(2, "1.4.2");
+        router = announces.createRouter(3);
+        snapshot = DeviceSnapshot.EMPTY.put(mx840, pool).put(mx410, pool).put(router, pool);
+    }
+
+    @Test
+    public void testPlainText() {
+        final DeviceQuery query = DeviceQuery.parse("mx410 matthias");
+        assertTrue(query.isPlainText());
+        assertEquals("MX410 MATTHIAS", query.getIndexedText());
+        assertEquals(Arrays.asList(mx410, router), search(query));
+    }
+
+    @Test
+    public void testTypePattern() {
+        assertEquals(Collections.singletonList(mx840), search("type:MX840*"));
+        assertEquals(Collections.emptyList(), search("type:MX840"));
+        assertEquals(Arrays.asList(mx840, mx410, router), search("type:MX*"));
+        assertEquals(Collections.singletonList(mx840), search("type:*8*B"));
+        assertEquals("MX840", DeviceQuery.parse("type:MX840*").getIndexedText());
+    }
+
+    @Test
+    public void testFirmware() {
+        assertEquals(Collections.singletonList(mx410), search("fw:<1.5"));
+        assertEquals(Arrays.asList(mx840, router), search("fw:>=4.1.1"));
+        assertEquals(Arrays.asList(mx840, router), search("fw:4.1"));
+        assertEquals(Collections.emptyList(), search("fw:4.2"));
+    }
+
+    @Test
+    public void testFirmwareComponentsWithoutDigits() {
+        final TestAnnounces announces = new TestAnnounces();
+        final StringPool pool = new StringPool();
+        final Announce beta = announces.create(4, "2.10b.x");
+        snapshot = DeviceSnapshot.EMPTY.put(beta, pool);
+        assertEquals(Collections.singletonList(beta), search("fw:>2.9"));
+        assertEquals(Collections.singletonList(beta), search("fw:2.10.0"));
+        assertEquals(Collections.singletonList(beta), search("fw:<=2.10"));
+        assertEquals(Collections.emptyList(), search("fw:2.10.0.0"));
+        assertEquals(Collections.emptyList(), search("fw:<2.10"));
+    }
+
+    @Test
+    public void testSubnet() {
+        assertEquals(3, search("ip:172.19.0.0/16").size());
+        assertEquals(3, search("ip:172.19.192.57").size());
+        assertEquals(0, search("ip:172.20.0.0/16").size());
+        assertEquals(3, search("ip:10.0.0.0/0").size());
+    }
+
+    @Test
+    public void testServiceRouterAndNegation() {
+        assertEquals(3, search("service:daq").size());
+        assertEquals(0, search("service:modbus").size());
+        assertEquals(3, search("service:DAQSTREAM").size());
+        assertFalse(DeviceQuery.parse("router").isPlainText());
+        assertEquals(Collections.singletonList(router), search("router"));
+        assertEquals(Collections.singletonList(router), search("type:* router"));
+        assertEquals(Collections.singletonList(router), search("type:* is:router"));
+        assertEquals(Arrays.asList(mx840, mx410), search("!router"));
+        assertEquals(Arrays.asList(mx840, mx410), search("!is:router"));
+        assertNull(DeviceQuery.parse("!router").getIndexedText());
+        assertEquals(Collections.singletonList(mx410),
+                search("type:MX* fw:<1.5 ip:172.19.0.0/16 service:daq !is:router"));
+        assertNull(DeviceQuery.parse("!is:router").getIndexedText());
+        assertEquals("IS:GATEWAY", DeviceQuery.parse("is:gateway").getIndexedText());
+    }
+
+    @Test
+    public void testLoneNegationIsText() {
+        assertTrue(DeviceQuery.parse("!").isPlainText());
+        assertTrue(DeviceQuery.parse("mx410 !").isPlainText());
+        assertEquals(Collections.emptyList(), search("type:MX* !"));
+    }
+
+    @Test
+    public void testInvalidTermIsText() {
+        final DeviceQuery query = DeviceQuery.parse("ip:300.1.2.3/8 !x");
+        assertFalse(query.isPlainText());
+        assertEquals("IP:300.1.2.3/8", query.getIndexedText());
+        assertEquals(Collections.emptyList(), search(query));
+    }
+
+    private List<Announce> search(String query) {
+        return search(DeviceQuery.parse(query));
+    }
+
+    private List<Announce> search(DeviceQuery query) {
+        final DeviceSearchIndex index = new DeviceSearchIndex();
+        index.update(snapshot);
+        final List<Announce> matches = new ArrayList<>();
+        index.search(query, matches);
+        for (final DeviceSnapshot.Entry entry : snapshot.entries()) {
+            assertEquals(query.matches(entry), matches.contains(entry.announce));
+        }
+        return matches;
+    }
+}
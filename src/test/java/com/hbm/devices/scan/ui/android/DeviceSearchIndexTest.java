@@ -0,0 +1,177 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import com.hbm.devices.scan.announce.Announce;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DeviceSearchIndexTest {
+
+    private static final int NUMBER_OF_DEVICES = 5000;
+    private static final int ROUNDS = 20;
+    private static final String[] TYPES = {"MX410", "MX840B", "MX1615B", "CX22W", "PMX", "SomatXR"};
+    private static final String[] NAMES = {"Test bench", "Climate chamber", "Rotor", "Crash sled", "Wind tunnel"};
+    private static final String[] QUERIES = {"", "M", "MX", "MX8", "MX840", "ROTOR", "CHAMBER 1", "0009E5",
+        "0009E5000ABC", "SOMATXR", "NOT THERE"};
+    private static final String SELECTIVE_QUERY = "0009E5000ABC";
+    private static final String UNRELATED_QUERY = "~~~";
+
+    private TestAnnounces announces;
+    private StringPool pool;
+
+    @Before
+    public void setUp() {
+        announces = new TestAnnounces();
+        pool = new StringPool();
+    }
+
+    @Test
+    public void testFindsSubstrings() {
+        DeviceSnapshot snapshot = DeviceSnapshot.EMPTY;
+        snapshot = snapshot.put(announces.create(1, "Rotor 12", "MX840B"), pool);
+        snapshot = snapshot.put(announces.create(2, "Climate chamber", "MX410"), pool);
+        final DeviceSearchIndex index = new DeviceSearchIndex();
+        index.update(snapshot);
+
+        assertEquals(1, search(index, "OTO").size());
+        assertEquals(2, search(index, "MX").size());
+        assertEquals(1, search(index, "MX4").size());
+        assertEquals(1, search(index, "0009E5000002").size());
+        assertEquals(0, search(index, "MX4108").size());
+        assertEquals(0, search(index, "rotor").size());
+    }
+
+    @Test
+    public void testRefinesLastResult() {
+        DeviceSnapshot snapshot = DeviceSnapshot.EMPTY;
+        for (int i = 0; i < 100; i++) {
+            snapshot = snapshot.put(createDevice(i, 0), pool);
+        }
+        final DeviceSearchIndex index = new DeviceSearchIndex();
+        index.update(snapshot);
+
+        for (final String query : new String[]{"R", "RO", "ROT", "ROTOR", "ROTOR 1"}) {
+            assertEquals(query, scan(snapshot, query), search(index, query));
+        }
+        assertEquals(4, index.getRefinedSearches());
+
+        assertEquals(scan(snapshot, "ROTOR"), search(index, "ROTOR"));
+        assertEquals(4, index.getRefinedSearches());
+
+        final Announce added = createDevice(110, 2);
+        snapshot = snapshot.put(added, pool);
+        index.update(snapshot);
+        final List<Announce> result = search(index, "ROTOR 1");
+        assertEquals(scan(snapshot, "ROTOR 1"), result);
+        assertTrue(result.contains(added));
+        assertEquals(4, index.getRefinedSearches());
+    }
+
+    @Test
+    public void testFollowsSnapshots() {
+        final Random random = new Random(4711);
+        final DeviceSearchIndex index = new DeviceSearchIndex();
+        DeviceSnapshot snapshot = DeviceSnapshot.EMPTY;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < 100; i++) {
+                final int id = random.nextInt(200);
+                if (random.nextInt(4) == 0) {
+                    snapshot = snapshot.remove(new CommunicationPath(announces.create(id)));
+                } else {
+                    snapshot = snapshot.put(createDevice(id, random.nextInt(3)), pool);
+                }
+            }
+            index.update(snapshot);
+            assertEquals(snapshot.size(), index.size());
+            for (final String query : QUERIES) {
+                assertEquals(query, scan(snapshot, query), search(index, query));
+            }
+        }
+
+        index.update(DeviceSnapshot.EMPTY);
+        assertEquals(0, index.size());
+        assertEquals(0, index.getGramCount());
+    }
+
+    /*
+     * Compares a search through the index with a scan over the folded texts of all devices,
+     * for 5000 devices and queries of typical lengths, by the number of devices compared with
+     * the query. A query matching a single device must not look at the other devices.
+     */
+    @Test
+    public void testIndexNarrowsComparedDevices() {
+        DeviceSnapshot snapshot = DeviceSnapshot.EMPTY;
+        for (int i = 0; i < NUMBER_OF_DEVICES; i++) {
+            snapshot = snapshot.put(createDevice(i, 0), pool);
+        }
+        final DeviceSearchIndex index = new DeviceSearchIndex();
+        index.update(snapshot);
+
+        for (final String query : QUERIES) {
+            search(index, UNRELATED_QUERY);
+            final long before = index.getComparedDevices();
+            assertEquals(query, scan(snapshot, query), search(index, query));
+            final long compared = index.getComparedDevices() - before;
+            assertTrue(query + " compared " + compared + " devices", compared <= NUMBER_OF_DEVICES);
+            if (query.equals(SELECTIVE_QUERY)) {
+                assertEquals(1, compared);
+            }
+        }
+    }
+
+    private Announce createDevice(int id, int variant) {
+        return announces.create(id, NAMES[(id + variant) % NAMES.length] + ' ' + id % 97,
+                TYPES[(id + variant) % TYPES.length]);
+    }
+
+    private static List<Announce> search(DeviceSearchIndex index, String query) {
+        final List<Announce> matches = new ArrayList<>();
+        index.search(query, matches);
+        return matches;
+    }
+
+    private static List<Announce> scan(DeviceSnapshot snapshot, String query) {
+        final List<Announce> matches = new ArrayList<>();
+        for (final DeviceSnapshot.Entry entry : snapshot.entries()) {
+            if (entry.text.matches(query)) {
+                matches.add(entry.announce);
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import com.hbm.devices.scan.announce.Announce;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class DeviceSnapshotTest {
+
+    private static final int NUMBER_OF_DEVICES = 2000;
+    private static final int NUMBER_OF_OPERATIONS = 20000;
+
+    private TestAnnounces announces;
+    private StringPool pool;
+
+    @Before
+    public void setUp() {
+        announces = new TestAnnounces();
+        pool = new StringPool();
+    }
+
+    @Test
+    public void testOldSnapshotsAreNotModified() {
+        final Announce a = announces.create(1);
+        final Announce b = announces.create(2);
+        final DeviceSnapshot first = DeviceSnapshot.EMPTY.put(a, pool);
+        final DeviceSnapshot second = first.put(b, pool);
+        final DeviceSnapshot third = second.remove(a);
+
+        assertEquals(0, DeviceSnapshot.EMPTY.size());
+        assertEquals(list(a), new ArrayList<>(first));
+        assertEquals(list(a, b), new ArrayList<>(second));
+        assertEquals(list(b), new ArrayList<>(third));
+    }
+
+    @Test
+    public void testHashCollisions() {
+        // "Aa" and "BB" have the same String hash code.
+        final Announce a = announces.create("Aa");
+        final Announce b = announces.create("BB");
+        DeviceSnapshot snapshot = DeviceSnapshot.EMPTY.put(a, pool).put(b, pool);
+        assertEquals(list(a, b), new ArrayList<>(snapshot));
+
+        final Announce aUpdate = announces.create("Aa");
+        snapshot = snapshot.put(aUpdate, pool);
+        assertEquals(2, snapshot.size());
+        assertSame(aUpdate, snapshot.iterator().next());
+
+        snapshot = snapshot.remove(b);
+        assertEquals(list(aUpdate), new ArrayList<>(snapshot));
+        snapshot = snapshot.remove(a);
+        assertEquals(0, snapshot.size());
+    }
+
+    @Test
+    public void testRandomOperationsMatchLinkedHashMap() {
+        final List<Announce> devices = new ArrayList<>(NUMBER_OF_DEVICES);
+        final List<Announce> updates = new ArrayList<>(NUMBER_OF_DEVICES);
+        for (int i = 0; i < NUMBER_OF_DEVICES; i++) {
+            devices.add(announces.create(i));
+            updates.add(announces.create(i, "5.0.0"));
+        }
+
+        final Map<String, Announce> reference = new LinkedHashMap<>();
+        DeviceSnapshot snapshot = DeviceSnapshot.EMPTY;
+        final Random random = new Random(4711);
+        for (int i = 0; i < NUMBER_OF_OPERATIONS; i++) {
+            final int device = random.nextInt(NUMBER_OF_DEVICES);
+            final String uuid = TestAnnounces.uuid(device);
+            final Announce announce = random.nextBoolean() ? devices.get(device) : updates.get(device);
+            if (random.nextInt(3) == 0) {
+                reference.remove(uuid);
+                snapshot = snapshot.remove(announce);
+            } else {
+                reference.put(uuid, announce);
+                snapshot = snapshot.put(announce, pool);
+            }
+            assertEquals(reference.size(), snapshot.size());
+        }
+        assertEquals(new ArrayList<>(reference.values()), new ArrayList<>(snapshot));
+
+        for (final Announce announce : devices) {
+            snapshot = snapshot.remove(announce);
+        }
+        assertEquals(0, snapshot.size());
+        assertEquals(0, new ArrayList<>(snapshot).size());
+    }
+
+    private static List<Announce> list(Announce... elements) {
+        final List<Announce> list = new ArrayList<>();
+        for (final Announce announce : elements) {
+            list.add(announce);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import com.hbm.devices.scan.announce.Announce;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DeviceStoreTest {
+
+    private static final int EVENTS = 30000;
+    /*
+     * Copying the devices on every event would make events at 10000 devices a hundred times
+     * more expensive than at 100 devices. A trie path gets only a level longer.
+     */
+    private static final int MAX_COST_RATIO = 3;
+
+    private TestAnnounces announces;
+
+    @Before
+    public void setUp() {
+        announces = new TestAnnounces();
+    }
+
+    @Test
+    public void testInsertUpdateRemove() {
+        final DeviceStore store = new DeviceStore();
+        final Announce a = announces.create(1);
+        final Announce b = announces.create(2);
+        final Announce c = announces.create(3);
+        store.put(a);
+        store.put(b);
+        store.put(c);
+        assertEquals(3, store.size());
+
+        final Announce bUpdate = announces.create(2, "5.0.0");
+        store.put(bUpdate);
+        List<Announce> list = new ArrayList<>(store.snapshot());
+        assertEquals("update must not change the number of devices", 3, list.size());
+        assertSame(a, list.get(0));
+        assertSame("update must keep the position of a device", bUpdate, list.get(1));
+        assertSame(c, list.get(2));
+
+        store.remove(announces.create(1));
+        list = new ArrayList<>(store.snapshot());
+        assertEquals(2, list.size());
+        assertSame(bUpdate, list.get(0));
+        assertSame(c, list.get(1));
+    }
+
+    /*
+     * Every device gets updated, removed and re-added over and over. The heap allocated for a
+     * single event, the nodes copied for the new snapshot, must not grow linearly with the
+     * number of stored devices.
+     */
+    @Test
+    public void testPerEventCostIsIndependentOfDeviceCount() {
+        final AllocationCounter allocations = AllocationCounter.create();
+        final long small = bytesPerEvent(allocations, 100);
+        final long large = bytesPerEvent(allocations, 10000);
+        assertTrue("events allocate " + small + " bytes at 100 devices, " + large + " bytes at 10000 devices",
+                large < small * MAX_COST_RATIO);
+    }
+
+    private long bytesPerEvent(AllocationCounter allocations, int numberOfDevices) {
+        final List<Announce> devices = new ArrayList<>(numberOfDevices);
+        final List<Announce> updates = new ArrayList<>(numberOfDevices);
+        for (int i = 0; i < numberOfDevices; i++) {
+            devices.add(announces.create(i));
+            updates.add(announces.create(i, "5.0.0"));
+        }
+        final DeviceStore store = new DeviceStore();
+        for (final Announce announce : devices) {
+            store.put(announce);
+        }
+
+        final long before = allocations.allocatedBytes();
+        for (int event = 0; event < EVENTS; event += 3) {
+            final int index = event % numberOfDevices;
+            store.put(updates.get(index));
+            store.remove(devices.get(index));
+            store.put(devices.get(index));
+        }
+        final long allocated = allocations.allocatedBytes() - before;
+        assertEquals(numberOfDevices, store.size());
+        return allocated / EVENTS;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import com.hbm.devices.scan.announce.Announce;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DeviceTextTest {
+
+    private static final int NUMBER_OF_DEVICES = 1000;
+
+    private TestAnnounces announces;
+
+    @Before
+    public void setUp() {
+        announces = new TestAnnounces();
+    }
+
+    @Test
+    public void testMatches() {
+        final DeviceText text = DeviceText.of(announces.create(0x123A), null, new StringPool());
+        assertTrue(text.matches(""));
+        assertTrue(text.matches("MATTHIAS"));
+        assertTrue(text.matches("MX410"));
+        assertTrue(text.matches("0009E500123A"));
+        assertFalse(text.matches("matthias"));
+        assertFalse(text.matches("QUANTUMX"));
+    }
+
+    @Test
+    public void testUnchangedTextIsReused() {
+        final StringPool pool = new StringPool();
+        final DeviceText text = DeviceText.of(announces.create(1), null, pool);
+        assertSame(text, DeviceText.of(announces.create(1, "5.0.0"), text, pool));
+        assertNotSame(text, DeviceText.of(announces.create(2), text, pool));
+    }
+
+    @Test
+    public void testUpperCaseTextsAreNotCopied() {
+        final Announce announce = announces.create(0x123A, "QX 1", "QX");
+        final DeviceText text = DeviceText.of(announce, null, new StringPool());
+        assertSame(announce.getParams().getDevice().getUuid(), text.getFoldedUuid());
+        assertSame(announce.getParams().getDevice().getName(), text.getFoldedDisplayName());
+        assertSame(announce.getParams().getDevice().getType(), text.getFoldedType());
+    }
+
+    /*
+     * Counts the strings the texts of 1000 devices of the same type retain in addition to
+     * their announces.
+     */
+    @Test
+    public void testDevicesShareFoldedTexts() {
+        final StringPool pool = new StringPool();
+        final List<Announce> devices = new ArrayList<>(NUMBER_OF_DEVICES);
+        final List<DeviceText> texts = new ArrayList<>(NUMBER_OF_DEVICES);
+        for (int i = 0; i < NUMBER_OF_DEVICES; i++) {
+            final Announce announce = announces.create(i);
+            devices.add(announce);
+            texts.add(DeviceText.of(announce, null, pool));
+        }
+
+        final Set<String> retained = Collections.newSetFromMap(new IdentityHashMap<String, Boolean>());
+        for (final DeviceText text : texts) {
+            retained.add(text.getFoldedDisplayName());
+            retained.add(text.getFoldedType());
+            retained.add(text.getFoldedUuid());
+        }
+        for (final Announce announce : devices) {
+            retained.remove(announce.getParams().getDevice().getName());
+            retained.remove(announce.getParams().getDevice().getType());
+            retained.remove(announce.getParams().getDevice().getUuid());
+        }
+        assertEquals(1, retained.size());
+        assertEquals(2, pool.size());
+    }
+}
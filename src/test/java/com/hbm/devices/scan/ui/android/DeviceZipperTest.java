@@ -0,0 +1,287 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import com.hbm.devices.scan.announce.Announce;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DeviceZipperTest {
+
+    private static final long TIME = 1500000000000L;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private TestAnnounces announces;
+
+    @Before
+    public void setUp() {
+        announces = new TestAnnounces();
+    }
+
+    @Test
+    public void sinkEncodesLikeGetBytes() throws IOException {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            builder.append("a\u00e4\u20ac\ud83d\ude00");
+        }
+        builder.append('\ud83d');
+        final String string = builder.toString();
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Utf8Sink sink = new Utf8Sink();
+        sink.open(out);
+        sink.write(string.substring(0, 1024));
+        sink.write(string.substring(1024));
+        sink.flush();
+        assertArrayEquals(string.getBytes(StandardCharsets.UTF_8), out.toByteArray());
+
+        final ByteArrayOutputStream second = new ByteArrayOutputStream();
+        sink.open(second);
+        sink.write("reused");
+        sink.flush();
+        assertArrayEquals("reused".getBytes(StandardCharsets.UTF_8), second.toByteArray());
+    }
+
+    @Test
+    public void writesAllDevices() throws IOException {
+        final List<Announce> list = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            list.add(announces.create(i, "Device \u00fc" + i, "MX840B"));
+        }
+        final List<Integer> progress = new ArrayList<>();
+        final File file = new DeviceZipper().export(list, folder.getRoot(), TIME, (done, total) -> {
+            assertEquals(list.size(), total);
+            progress.add(done);
+            return true;
+        });
+        assertNotNull(file);
+
+        assertEquals(list.size(), progress.size());
+        assertEquals(Integer.valueOf(list.size()), progress.get(progress.size() - 1));
+        assertEquals(expectedJson(list), readEntry(read(file)));
+        try (ZipFile zip = new ZipFile(file)) {
+            final ZipEntry entry = zip.getEntry(DeviceZipper.ENTRY_NAME);
+            assertNotNull(entry);
+            assertEquals(1, zip.size());
+            assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+            assertEquals(expectedJson(list), new String(readAll(zip.getInputStream(entry)), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void writesEmptyList() throws IOException {
+        final List<Announce> list = new ArrayList<>();
+        final File file = new DeviceZipper().export(list, folder.getRoot(), TIME, (done, total) -> true);
+        assertNotNull(file);
+        assertEquals(expectedJson(list), readEntry(read(file)));
+    }
+
+    @Test
+    public void reusesExportOfSameDevices() throws IOException {
+        final DeviceZipper zipper = new DeviceZipper();
+        final List<Announce> list = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            list.add(announces.create(i));
+        }
+        final File first = zipper.export(list, folder.getRoot(), TIME, (done, total) -> true);
+        final long deflated = zipper.getDeflatedSegments();
+        final File second = zipper.export(new ArrayList<>(list), folder.getRoot(), TIME + 1000,
+                (done, total) -> true);
+        assertNotNull(first);
+        assertEquals(first, second);
+        assertEquals(new File(folder.getRoot(), DeviceZipper.DIRECTORY), first.getParentFile());
+        assertEquals(deflated, zipper.getDeflatedSegments());
+        assertEquals(expectedJson(list), readEntry(read(second)));
+
+        final File fresh = new DeviceZipper().export(list, folder.getRoot(), TIME + 2000, (done, total) -> true);
+        assertEquals(first, fresh);
+    }
+
+    @Test
+    public void compressesOnlyChangedDevices() throws IOException {
+        final DeviceZipper zipper = new DeviceZipper();
+        final List<Announce> list = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            list.add(announces.create(i));
+        }
+        final File first = zipper.export(list, folder.getRoot(), TIME, (done, total) -> true);
+        final long deflated = zipper.getDeflatedSegments();
+
+        list.set(7, announces.create(7, "2.0.0"));
+        list.remove(30);
+        final File second = zipper.export(list, folder.getRoot(), TIME, (done, total) -> true);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNotEquals(first, second);
+        assertTrue(first.exists());
+        // The changed device and the head carrying the date.
+        assertEquals(deflated + 2, zipper.getDeflatedSegments());
+        assertEquals(expectedJson(list), readEntry(read(second)));
+    }
+
+    @Test
+    public void keepsCompressedBytesWithinBudget() throws IOException {
+        final List<Announce> list = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            list.add(announces.create(i));
+        }
+        final DeviceZipper unbounded = new DeviceZipper();
+        unbounded.export(list, folder.getRoot(), TIME, (done, total) -> true);
+        final long allBytes = unbounded.getCachedBytes();
+        assertTrue(allBytes > 0);
+
+        final DeviceZipper zipper = new DeviceZipper(allBytes / 2);
+        zipper.export(list, folder.getRoot(), TIME, (done, total) -> true);
+        assertTrue(zipper.getCachedBytes() <= allBytes / 2);
+        final long deflated = zipper.getDeflatedSegments();
+
+        list.remove(0);
+        final File second = zipper.export(list, folder.getRoot(), TIME, (done, total) -> true);
+        // Devices whose compressed bytes were dropped are compressed again.
+        assertTrue(zipper.getDeflatedSegments() - deflated > list.size() / 4);
+        assertTrue(zipper.getCachedBytes() <= allBytes / 2);
+        assertEquals(expectedJson(list), readEntry(read(second)));
+    }
+
+    @Test
+    public void trimMemoryDropsCachedSegments() throws IOException {
+        final DeviceZipper zipper = new DeviceZipper();
+        final List<Announce> list = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            list.add(announces.create(i));
+        }
+        zipper.export(list, folder.getRoot(), TIME, (done, total) -> true);
+        zipper.trimMemory();
+        assertEquals(0, zipper.getCachedBytes());
+
+        final long deflated = zipper.getDeflatedSegments();
+        list.remove(0);
+        final File second = zipper.export(list, folder.getRoot(), TIME, (done, total) -> true);
+        // Every device and the head carrying the date.
+        assertEquals(deflated + list.size() + 1, zipper.getDeflatedSegments());
+        assertEquals(expectedJson(list), readEntry(read(second)));
+    }
+
+    @Test
+    public void cancelledExportLeavesNothingBehind() throws IOException {
+        final List<Announce> list = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            list.add(announces.create(i));
+        }
+        assertNull(new DeviceZipper().export(list, folder.getRoot(), TIME, (done, total) -> done < 5));
+        final File[] files = new File(folder.getRoot(), DeviceZipper.DIRECTORY).listFiles();
+        assertNotNull(files);
+        assertEquals(0, files.length);
+    }
+
+    @Test
+    public void keepsOnlyNewestExports() throws IOException {
+        final File directory = folder.newFolder(DeviceZipper.DIRECTORY);
+        for (int i = 0; i < 10; i++) {
+            final File file = new File(directory, "old-" + i + ".zip");
+            assertTrue(file.createNewFile());
+            assertTrue(file.setLastModified(TIME + i * 1000L));
+        }
+        final List<Announce> list = new ArrayList<>();
+        list.add(announces.create(1));
+        final File export = new DeviceZipper().export(list, folder.getRoot(), TIME, (done, total) -> true);
+        assertNotNull(export);
+
+        final File[] files = directory.listFiles();
+        assertNotNull(files);
+        assertEquals(DeviceZipper.KEPT_EXPORTS, files.length);
+        assertTrue(export.exists());
+        for (int i = 10 - DeviceZipper.KEPT_EXPORTS + 1; i < 10; i++) {
+            assertTrue(new File(directory, "old-" + i + ".zip").exists());
+        }
+    }
+
+    private static String expectedJson(List<Announce> list) {
+        final StringBuilder builder = new StringBuilder("{\"date\":\"2017-07-14T02:40:00.000Z\",");
+        builder.append("\"version\": \"1.0\",\"devices\":[");
+        for (int i = 0; i < list.size(); i++) {
+            if (i > 0) {
+                builder.append(",\n");
+            }
+            builder.append(list.get(i).getJSONString());
+        }
+        return builder.append("]}").toString();
+    }
+
+    private static String readEntry(byte[] zip) throws IOException {
+        final ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zip));
+        final ZipEntry entry = zis.getNextEntry();
+        assertNotNull(entry);
+        assertEquals(DeviceZipper.ENTRY_NAME, entry.getName());
+        final String json = new String(readAll(zis), StandardCharsets.UTF_8);
+        assertNull(zis.getNextEntry());
+        return json;
+    }
+
+    private static byte[] read(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return readAll(in);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int count;
+        while ((count = in.read(buffer)) > 0) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+}
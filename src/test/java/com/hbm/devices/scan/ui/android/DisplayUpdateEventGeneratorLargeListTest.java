@@ -0,0 +1,150 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import com.hbm.devices.scan.announce.Announce;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DisplayUpdateEventGeneratorLargeListTest implements DisplayNotifier {
+
+    private static final int DEVICES = 10000;
+
+    private static final List<Announce> DEVICE_LIST = new ArrayList<>();
+    private static final List<Announce> UPDATED_LIST = new ArrayList<>();
+
+    private List<Announce> oldList;
+    private List<Announce> display;
+    private int moves;
+
+    @BeforeClass
+    public static void createDevices() {
+        final TestAnnounces announces = new TestAnnounces();
+        for (int i = 0; i < DEVICES; i++) {
+            DEVICE_LIST.add(announces.create(i));
+            UPDATED_LIST.add(announces.create(i, "5.0.0"));
+        }
+    }
+
+    @Test
+    public void testReversedList() {
+        final List<Announce> newList = new ArrayList<>(DEVICE_LIST);
+        Collections.reverse(newList);
+        compare(DEVICE_LIST, newList);
+        assertEquals(DEVICES - 1, moves);
+    }
+
+    @Test
+    public void testRotatedList() {
+        final List<Announce> newList = new ArrayList<>(DEVICE_LIST);
+        Collections.rotate(newList, 1);
+        compare(DEVICE_LIST, newList);
+        assertEquals(1, moves);
+    }
+
+    @Test
+    public void testUnchangedList() {
+        compare(DEVICE_LIST, new ArrayList<>(DEVICE_LIST));
+        assertEquals(0, moves);
+    }
+
+    @Test
+    public void testShuffledListWithRemovalsAdditionsAndUpdates() {
+        final Random random = new Random(4711);
+        final List<Announce> before = new ArrayList<>();
+        final List<Announce> after = new ArrayList<>();
+        for (int i = 0; i < DEVICES; i++) {
+            final int kind = random.nextInt(10);
+            if (kind != 0) {
+                before.add(DEVICE_LIST.get(i));
+            }
+            if (kind == 1) {
+                after.add(UPDATED_LIST.get(i));
+            } else if (kind != 2) {
+                after.add(DEVICE_LIST.get(i));
+            }
+        }
+        Collections.shuffle(before, random);
+        Collections.shuffle(after, random);
+        compare(before, after);
+    }
+
+    @Test
+    public void testFewMovesInLargeList() {
+        final Random random = new Random(42);
+        final List<Announce> newList = new ArrayList<>(DEVICE_LIST);
+        for (int i = 0; i < 10; i++) {
+            final Announce moved = newList.remove(random.nextInt(DEVICES));
+            newList.add(random.nextInt(DEVICES), moved);
+        }
+        compare(DEVICE_LIST, newList);
+        assertTrue(moves <= 10);
+    }
+
+    private void compare(List<Announce> before, List<Announce> after) {
+        oldList = new ArrayList<>(before);
+        display = new ArrayList<>(before);
+        moves = 0;
+
+        new DisplayUpdateEventGenerator(this).compareLists(oldList, after);
+
+        assertEquals(after, oldList);
+        assertEquals(after, display);
+    }
+
+    @Override
+    public void notifyRemoveAt(int position) {
+        display.remove(position);
+    }
+
+    @Override
+    public void notifyAddAt(int position) {
+        display.add(position, oldList.get(position));
+    }
+
+    @Override
+    public void notifyChangeAt(int position, int changedFields) {
+        display.set(position, oldList.get(position));
+    }
+
+    @Override
+    public void notifyMoved(int fromPosition, int toPosition) {
+        moves++;
+        display.add(toPosition, display.remove(fromPosition));
+    }
+}
@@ -126,7 +126,7 @@ public class DisplayUpdateEventGeneratorTest implements DisplayNotifier, Observe
     }
 
     @Override
-    public void notifyChangeAt(int position) {
+    public void notifyChangeAt(int position, int changedFields) {
         oldListClone.set(position, oldList.get(position));
     }
 
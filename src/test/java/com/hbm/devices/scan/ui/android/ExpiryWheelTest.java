@@ -0,0 +1,164 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ExpiryWheelTest {
+
+    private static final long TIMEOUT = TimeUnit.SECONDS.toMillis(15);
+    private static final int NUMBER_OF_KEYS = 500;
+    private static final int NUMBER_OF_OPERATIONS = 50000;
+
+    private ManualClock clock;
+    private ExpiryWheel<Integer> wheel;
+    private List<Integer> expired;
+
+    @Before
+    public void setUp() {
+        clock = new ManualClock();
+        wheel = new ExpiryWheel<>(clock);
+        expired = new ArrayList<>();
+    }
+
+    @Test
+    public void testExpiresAtDeadline() {
+        wheel.schedule(1, TIMEOUT);
+        clock.now += TIMEOUT - 1;
+        assertEquals(0, wheel.advance(expired));
+        clock.now += 1;
+        assertEquals(1, wheel.advance(expired));
+        assertEquals(Collections.singletonList(1), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testRefreshPostponesExpiry() {
+        wheel.schedule(1, TIMEOUT);
+        wheel.schedule(2, TIMEOUT);
+        clock.now += TIMEOUT / 2;
+        wheel.schedule(1, TIMEOUT);
+        clock.now += TIMEOUT / 2;
+        assertEquals(1, wheel.advance(expired));
+        assertEquals(Collections.singletonList(2), expired);
+        clock.now += TIMEOUT / 2;
+        assertEquals(1, wheel.advance(expired));
+        assertEquals(1, (int) expired.get(1));
+    }
+
+    @Test
+    public void testRemovedKeyDoesNotExpire() {
+        wheel.schedule(1, TIMEOUT);
+        assertTrue(wheel.remove(1));
+        assertFalse(wheel.remove(1));
+        clock.now += TIMEOUT;
+        assertEquals(0, wheel.advance(expired));
+    }
+
+    @Test
+    public void testLongTimeoutsCascade() {
+        final long[] timeouts = {
+            TimeUnit.SECONDS.toMillis(10), TimeUnit.MINUTES.toMillis(5),
+            TimeUnit.HOURS.toMillis(2), TimeUnit.HOURS.toMillis(30)
+        };
+        for (int i = 0; i < timeouts.length; i++) {
+            wheel.schedule(i, timeouts[i]);
+        }
+        for (int i = 0; i < timeouts.length; i++) {
+            clock.now = timeouts[i] - 1;
+            wheel.advance(expired);
+            assertEquals(i, expired.size());
+            clock.now = timeouts[i];
+            wheel.advance(expired);
+            assertEquals(i + 1, expired.size());
+            assertEquals(i, (int) expired.get(i));
+        }
+    }
+
+    /*
+     * Random schedules, refreshes, removals and clock steps, checked against the deadlines
+     * themselves: a key must not expire before its deadline and must have expired one tick
+     * after it.
+     */
+    @Test
+    public void testRandomOperations() {
+        final Random random = new Random(4711);
+        final Map<Integer, Long> deadlines = new HashMap<>();
+        for (int operation = 0; operation < NUMBER_OF_OPERATIONS; operation++) {
+            final int key = random.nextInt(NUMBER_OF_KEYS);
+            final int kind = random.nextInt(10);
+            if (kind < 6) {
+                final long timeout = random.nextInt(10) == 0
+                        ? 1 + (long) (random.nextDouble() * TimeUnit.HOURS.toMillis(10))
+                        : 1 + random.nextInt((int) TIMEOUT * 2);
+                wheel.schedule(key, timeout);
+                deadlines.put(key, clock.now + timeout);
+            } else if (kind < 7) {
+                assertEquals(deadlines.remove(key) != null, wheel.remove(key));
+            } else {
+                clock.now += random.nextInt(100) == 0
+                        ? random.nextInt((int) TimeUnit.HOURS.toMillis(1))
+                        : random.nextInt(300);
+                expired.clear();
+                wheel.advance(expired);
+                for (final Integer expiredKey : expired) {
+                    final Long deadline = deadlines.remove(expiredKey);
+                    assertTrue("expired key was not scheduled", deadline != null);
+                    assertTrue("key expired too early", deadline <= clock.now);
+                }
+                for (final long deadline : deadlines.values()) {
+                    assertTrue("key expired too late", deadline > clock.now - ExpiryWheel.TICK_MILLIS);
+                }
+            }
+            assertEquals(deadlines.size(), wheel.size());
+        }
+    }
+
+    private static final class ManualClock implements Clock {
+        long now;
+
+        @Override
+        public long millis() {
+            return now;
+        }
+    }
+}
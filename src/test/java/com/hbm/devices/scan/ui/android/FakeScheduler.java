@@ -0,0 +1,84 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Clock and scheduler for tests: scheduled tasks only run when the time is advanced.
+ */
+final class FakeScheduler implements SnapshotCoalescer.Scheduler, Clock {
+
+    private final List<Task> tasks = new ArrayList<>();
+    long now;
+
+    @Override
+    public long millis() {
+        return now;
+    }
+
+    @Override
+    public void schedule(@NonNull Runnable task, long delayMillis) {
+        tasks.add(new Task(now + delayMillis, task));
+    }
+
+    /**
+     * Runs all tasks due until {@code time} in the order they are due.
+     */
+    void advanceTo(long time) {
+        while (true) {
+            Task next = null;
+            for (final Task task : tasks) {
+                if (task.due <= time && (next == null || task.due < next.due)) {
+                    next = task;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            tasks.remove(next);
+            now = next.due;
+            next.runnable.run();
+        }
+        now = time;
+    }
+
+    private static final class Task {
+        final long due;
+        final Runnable runnable;
+
+        Task(long due, Runnable runnable) {
+            this.due = due;
+            this.runnable = runnable;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InterfaceMembershipsTest {
+
+    private static final InterfaceMemberships.Interface ETH0 = create("eth0", 172, 19, 192, 57, 16);
+    private static final InterfaceMemberships.Interface WLAN0 = create("wlan0", 192, 168, 1, 10, 24);
+
+    private InterfaceMemberships memberships;
+    private FakeGroup group;
+
+    @Before
+    public void setUp() {
+        memberships = new InterfaceMemberships();
+        group = new FakeGroup();
+    }
+
+    @Test
+    public void joinsNewAndDropsVanishedInterfaces() {
+        memberships.update(Arrays.asList(ETH0, WLAN0), group);
+        assertEquals(set("eth0", "wlan0"), memberships.getJoinedInterfaces());
+
+        memberships.update(Collections.singletonList(WLAN0), group);
+        assertEquals(set("wlan0"), memberships.getJoinedInterfaces());
+        assertFalse(group.keys.get("eth0").isValid());
+        assertTrue(group.keys.get("wlan0").isValid());
+
+        memberships.update(Arrays.asList(ETH0, WLAN0), group);
+        assertEquals(set("eth0", "wlan0"), memberships.getJoinedInterfaces());
+        assertEquals(Arrays.asList("eth0", "wlan0", "eth0"), group.joins);
+    }
+
+    @Test
+    public void failedJoinSkipsOnlyThatInterfaceAndIsRetried() {
+        group.failing.add("eth0");
+        memberships.update(Arrays.asList(ETH0, WLAN0), group);
+        assertEquals(set("wlan0"), memberships.getJoinedInterfaces());
+        assertEquals(1, memberships.getJoinFailures());
+
+        group.failing.clear();
+        memberships.update(Arrays.asList(ETH0, WLAN0), group);
+        assertEquals(set("eth0", "wlan0"), memberships.getJoinedInterfaces());
+        assertEquals(1, memberships.getJoinFailures());
+    }
+
+    @Test
+    public void invalidMembershipIsJoinedAgain() {
+        memberships.update(Collections.singletonList(ETH0), group);
+        group.keys.get("eth0").valid = false;
+        memberships.update(Collections.singletonList(ETH0), group);
+        assertEquals(Arrays.asList("eth0", "eth0"), group.joins);
+        assertTrue(group.keys.get("eth0").isValid());
+    }
+
+    @Test
+    public void countsPacketsPerInterface() {
+        memberships.update(Arrays.asList(ETH0, WLAN0), group);
+        memberships.count(address(172, 19, 3, 4));
+        memberships.count(address(172, 19, 200, 1));
+        memberships.count(address(192, 168, 1, 77));
+        memberships.count(address(192, 168, 2, 77));
+        memberships.count(address(10, 0, 0, 1));
+
+        final Map<String, Long> counts = memberships.getPacketCounts();
+        assertEquals(Long.valueOf(2), counts.get("eth0"));
+        assertEquals(Long.valueOf(1), counts.get("wlan0"));
+        assertEquals(2, memberships.getUnassignedPackets());
+
+        memberships.update(Collections.singletonList(WLAN0), group);
+        assertEquals(Collections.singletonMap("wlan0", 1L), memberships.getPacketCounts());
+    }
+
+    @Test
+    public void countsPacketsPerSenderAddress() throws UnknownHostException {
+        final InetAddress device = InetAddress.getByAddress(address(192, 168, 1, 77));
+        final InetAddress stranger = InetAddress.getByAddress(address(10, 0, 0, 1));
+        memberships.update(Collections.singletonList(WLAN0), group);
+        memberships.count(device);
+        memberships.count(device);
+        memberships.count(stranger);
+        memberships.count(stranger);
+        assertEquals(Collections.singletonMap("wlan0", 2L), memberships.getPacketCounts());
+        assertEquals(2, memberships.getUnassignedPackets());
+
+        memberships.update(Collections.singletonList(ETH0), group);
+        memberships.count(device);
+        assertEquals(Collections.singletonMap("eth0", 0L), memberships.getPacketCounts());
+        assertEquals(3, memberships.getUnassignedPackets());
+    }
+
+    @Test
+    public void matchesPartialPrefixBytes() {
+        final InterfaceMemberships.Interface narrow = create("eth1", 10, 1, 2, 129, 25);
+        assertTrue(narrow.contains(address(10, 1, 2, 200)));
+        assertFalse(narrow.contains(address(10, 1, 2, 100)));
+        assertFalse(narrow.contains(new byte[16]));
+    }
+
+    @Test
+    public void updateWithoutInterfacesDropsAllMemberships() {
+        memberships.update(Arrays.asList(ETH0, WLAN0), group);
+        memberships.update(Collections.<InterfaceMemberships.Interface>emptyList(), group);
+        assertTrue(memberships.getJoinedInterfaces().isEmpty());
+        assertFalse(group.keys.get("eth0").isValid());
+        assertFalse(group.keys.get("wlan0").isValid());
+    }
+
+    private static InterfaceMemberships.Interface create(String name, int a, int b, int c, int d, int prefix) {
+        return new InterfaceMemberships.Interface(name, new byte[][]{address(a, b, c, d)}, new int[]{prefix});
+    }
+
+    private static byte[] address(int a, int b, int c, int d) {
+        return new byte[]{(byte) a, (byte) b, (byte) c, (byte) d};
+    }
+
+    private static Set<String> set(String... names) {
+        return new HashSet<>(Arrays.asList(names));
+    }
+
+    private static final class FakeGroup implements InterfaceMemberships.Group {
+        final List<String> joins = new ArrayList<>();
+        final Set<String> failing = new HashSet<>();
+        final Map<String, FakeKey> keys = new HashMap<>();
+
+        @NonNull
+        @Override
+        public InterfaceMemberships.Key join(@NonNull String interfaceName) throws IOException {
+            if (failing.contains(interfaceName)) {
+                throw new IOException("interface " + interfaceName + " is down");
+            }
+            joins.add(interfaceName);
+            final FakeKey key = new FakeKey();
+            keys.put(interfaceName, key);
+            return key;
+        }
+    }
+
+    private static final class FakeKey implements InterfaceMemberships.Key {
+        boolean valid = true;
+
+        @Override
+        public boolean isValid() {
+            return valid;
+        }
+
+        @Override
+        public void drop() {
+            valid = false;
+        }
+    }
+}
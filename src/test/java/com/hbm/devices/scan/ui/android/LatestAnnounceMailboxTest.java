@@ -0,0 +1,95 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import com.hbm.devices.scan.announce.Announce;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LatestAnnounceMailboxTest {
+
+    private static final long TICK_MILLIS = 10;
+
+    @Test
+    public void testNewestAnnounceWins() throws InterruptedException {
+        final TestAnnounces announces = new TestAnnounces();
+        final Announce first = announces.create(1, "1.0");
+        final Announce other = announces.create(2, "1.0");
+        final Announce second = announces.create(1, "2.0");
+        final Announce third = announces.create(1, "3.0");
+
+        final List<Announce> handled = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(2);
+        final LatestAnnounceMailbox mailbox = new LatestAnnounceMailbox("test", announce -> {
+            handled.add(announce);
+            done.countDown();
+        }, TICK_MILLIS, () -> { });
+        mailbox.put(first);
+        mailbox.put(other);
+        mailbox.put(second);
+        mailbox.put(third);
+        assertEquals(2, mailbox.size());
+        assertEquals(2, mailbox.getSupersededAnnounces());
+
+        final Thread worker = new Thread(mailbox);
+        worker.start();
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        worker.interrupt();
+        worker.join(1000);
+
+        assertFalse(worker.isAlive());
+        assertEquals(2, handled.size());
+        assertSame(third, handled.get(0));
+        assertSame(other, handled.get(1));
+        assertEquals(2, mailbox.getMetrics().getMaxDepth());
+    }
+
+    @Test
+    public void testTickRunsWhileIdle() throws InterruptedException {
+        final CountDownLatch ticks = new CountDownLatch(3);
+        final LatestAnnounceMailbox mailbox = new LatestAnnounceMailbox("test", announce -> { },
+                TICK_MILLIS, ticks::countDown);
+        final Thread worker = new Thread(mailbox);
+        worker.start();
+        assertTrue(ticks.await(1, TimeUnit.SECONDS));
+        worker.interrupt();
+        worker.join(1000);
+        assertFalse(worker.isAlive());
+    }
+}
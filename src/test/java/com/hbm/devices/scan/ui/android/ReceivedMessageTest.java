@@ -0,0 +1,113 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ReceivedMessageTest {
+
+    private static final int CAPACITY = 64;
+
+    private final BlockingQueue<ReceivedMessage> pool = new ArrayBlockingQueue<>(2);
+
+    @Test
+    public void decodesReceivedContent() {
+        final ReceivedMessage message = receive("{\"method\":\"announce\",\"name\":\"M\u00fcnchen\"}");
+        assertEquals("{\"method\":\"announce\",\"name\":\"M\u00fcnchen\"}", message.toString());
+        assertEquals(0, message.content().position());
+        assertEquals(39, message.content().limit());
+    }
+
+    @Test
+    public void lastReleaseReturnsMessageToPool() {
+        final ReceivedMessage message = receive("announce");
+        message.retain();
+        message.release();
+        assertTrue(pool.isEmpty());
+
+        message.release();
+        assertSame(message, pool.poll());
+    }
+
+    @Test
+    public void prepareReceiveResetsMessage() {
+        final ReceivedMessage message = receive("a longer announce");
+        message.release();
+        assertSame(message, pool.poll());
+
+        final ReceivedMessage reused = receive(message, "short");
+        assertEquals("short", reused.toString());
+        reused.release();
+        assertSame(message, pool.poll());
+    }
+
+    @Test
+    public void stageReleasesDiscardedMessages() {
+        final ReceivedMessage first = receive("first");
+        final ReceivedMessage second = receive("second");
+        final Stage<ReceivedMessage> stage = new Stage<>("parse", 2, ReceivedMessage::release,
+                ReceivedMessage::release);
+        stage.offer(first.retain());
+        stage.offer(second.retain());
+        first.release();
+        second.release();
+        assertTrue(pool.isEmpty());
+
+        Thread.currentThread().interrupt();
+        try {
+            stage.run();
+        } finally {
+            Thread.interrupted();
+        }
+
+        assertEquals(2, pool.size());
+        assertSame(first, pool.poll());
+        assertSame(second, pool.poll());
+    }
+
+    private ReceivedMessage receive(String content) {
+        return receive(new ReceivedMessage(CAPACITY, pool), content);
+    }
+
+    private static ReceivedMessage receive(ReceivedMessage message, String content) {
+        final ByteBuffer buffer = message.prepareReceive();
+        buffer.put(content.getBytes(StandardCharsets.UTF_8));
+        message.received();
+        return message;
+    }
+}
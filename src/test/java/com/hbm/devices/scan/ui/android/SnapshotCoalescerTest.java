@@ -0,0 +1,150 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotCoalescerTest {
+
+    private static final long WINDOW = 100;
+    private static final long MAX_LATENCY = 250;
+
+    private FakeScheduler scheduler;
+    private List<DeviceSnapshot> published;
+    private List<Integer> merged;
+    private List<Long> publishTimes;
+    private SnapshotCoalescer coalescer;
+    private DeviceSnapshot[] snapshots;
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler();
+        published = new ArrayList<>();
+        merged = new ArrayList<>();
+        publishTimes = new ArrayList<>();
+        coalescer = new SnapshotCoalescer((snapshot, mergedEvents) -> {
+            published.add(snapshot);
+            merged.add(mergedEvents);
+            publishTimes.add(scheduler.now);
+        }, WINDOW, MAX_LATENCY, scheduler, scheduler);
+
+        final TestAnnounces announces = new TestAnnounces();
+        final StringPool pool = new StringPool();
+        snapshots = new DeviceSnapshot[10];
+        DeviceSnapshot snapshot = DeviceSnapshot.EMPTY;
+        for (int i = 0; i < snapshots.length; i++) {
+            snapshot = snapshot.put(announces.create(i), pool);
+            snapshots[i] = snapshot;
+        }
+    }
+
+    @Test
+    public void publishesSingleEventAfterWindow() {
+        coalescer.submit(snapshots[0]);
+        scheduler.advanceTo(WINDOW - 1);
+        assertTrue(published.isEmpty());
+        scheduler.advanceTo(WINDOW);
+        assertEquals(1, published.size());
+        assertSame(snapshots[0], published.get(0));
+        assertEquals(Integer.valueOf(1), merged.get(0));
+    }
+
+    @Test
+    public void mergesBurstIntoNewestSnapshot() {
+        coalescer.submit(snapshots[0]);
+        scheduler.advanceTo(30);
+        coalescer.submit(snapshots[1]);
+        scheduler.advanceTo(60);
+        coalescer.submit(snapshots[2]);
+        scheduler.advanceTo(1000);
+
+        assertEquals(1, published.size());
+        assertSame(snapshots[2], published.get(0));
+        assertEquals(Integer.valueOf(3), merged.get(0));
+        assertEquals(Long.valueOf(60 + WINDOW), publishTimes.get(0));
+        assertEquals(3, coalescer.getEventCount());
+        assertEquals(1, coalescer.getFlushCount());
+    }
+
+    @Test
+    public void continuousEventsArePublishedWithinMaxLatency() {
+        for (long time = 0; time <= 1000; time += 50) {
+            scheduler.advanceTo(time);
+            coalescer.submit(snapshots[(int) (time / 50) % snapshots.length]);
+        }
+        scheduler.advanceTo(2000);
+
+        long previous = 0;
+        for (final long publishTime : publishTimes) {
+            assertTrue(publishTime - previous <= MAX_LATENCY);
+            previous = publishTime;
+        }
+        assertEquals(Long.valueOf(MAX_LATENCY), publishTimes.get(0));
+        int total = 0;
+        for (final int count : merged) {
+            total += count;
+        }
+        assertEquals(21, total);
+        assertEquals(coalescer.getFlushCount(), published.size());
+    }
+
+    @Test
+    public void separateBurstsArePublishedSeparately() {
+        coalescer.submit(snapshots[0]);
+        scheduler.advanceTo(500);
+        coalescer.submit(snapshots[1]);
+        scheduler.advanceTo(1000);
+
+        assertEquals(2, published.size());
+        assertEquals(Long.valueOf(WINDOW), publishTimes.get(0));
+        assertEquals(Long.valueOf(500 + WINDOW), publishTimes.get(1));
+    }
+
+    @Test
+    public void nothingIsPublishedAfterClose() {
+        coalescer.submit(snapshots[0]);
+        coalescer.close();
+        coalescer.submit(snapshots[1]);
+        scheduler.advanceTo(1000);
+        assertTrue(published.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void windowMustNotExceedMaxLatency() {
+        new SnapshotCoalescer((snapshot, mergedEvents) -> { }, MAX_LATENCY + 1, MAX_LATENCY, scheduler, scheduler);
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import com.hbm.devices.scan.announce.Announce;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StableIdRegistryTest {
+
+    private static final int NUMBER_OF_DEVICES = 10000;
+    private static final int ROUNDS = 50;
+
+    private TestAnnounces announces;
+    private StableIdRegistry registry;
+
+    @Before
+    public void setUp() {
+        announces = new TestAnnounces();
+        registry = new StableIdRegistry();
+    }
+
+    @Test
+    public void testIdSurvivesUpdates() {
+        final Announce announce = announces.create(1);
+        final Announce update = announces.create(1, "5.0.0");
+        assertNotEquals(announce.hashCode(), update.hashCode());
+
+        final long id = registry.getId(announce);
+        assertEquals(id, registry.getId(update));
+        final List<Announce> displayed = new ArrayList<>();
+        displayed.add(update);
+        registry.retain(displayed, displayed);
+        assertEquals(id, registry.getId(announce));
+    }
+
+    @Test
+    public void testNoCollisions() {
+        final Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < NUMBER_OF_DEVICES; i++) {
+            assertTrue(ids.add(registry.getId(announces.create(i))));
+        }
+        assertEquals(NUMBER_OF_DEVICES, registry.size());
+    }
+
+    @Test
+    public void testShownUnconfirmedReleasedWithId() {
+        final Announce first = announces.create(1);
+        final Announce second = announces.create(2);
+        registry.setShownUnconfirmed(first, true);
+        registry.setShownUnconfirmed(second, true);
+        registry.setShownUnconfirmed(second, false);
+        assertTrue(registry.isShownUnconfirmed(announces.create(1, "5.0.0")));
+        assertFalse(registry.isShownUnconfirmed(second));
+        assertEquals(1, registry.getShownUnconfirmedCount());
+
+        final List<Announce> displayed = new ArrayList<>();
+        displayed.add(second);
+        registry.retain(displayed, displayed);
+        assertEquals(0, registry.getShownUnconfirmedCount());
+        assertFalse(registry.isShownUnconfirmed(first));
+    }
+
+    @Test
+    public void testFilteredDeviceKeepsId() {
+        final Announce first = announces.create(1);
+        final Announce second = announces.create(2);
+        final long id = registry.getId(first);
+        registry.setShownUnconfirmed(first, true);
+        registry.getId(second);
+
+        final List<Announce> known = new ArrayList<>();
+        known.add(first);
+        known.add(second);
+        registry.retain(known, Collections.singletonList(second));
+        assertEquals(2, registry.size());
+        assertEquals(0, registry.getShownUnconfirmedCount());
+        assertFalse(registry.isShownUnconfirmed(first));
+
+        registry.retain(known, known);
+        assertEquals(id, registry.getId(announces.create(1, "5.0.0")));
+
+        registry.retain(Collections.singletonList(second), Collections.singletonList(second));
+        assertEquals(1, registry.size());
+        assertNotEquals(id, registry.getId(first));
+    }
+
+    /*
+     * Devices come and go at random. Displayed devices keep their ids, released ids are never
+     * handed out again and the registry only holds the displayed devices.
+     */
+    @Test
+    public void testChurn() {
+        final Random random = new Random(4711);
+        final Announce[] devices = new Announce[200];
+        for (int i = 0; i < devices.length; i++) {
+            devices[i] = announces.create(i);
+        }
+        final Set<Long> released = new HashSet<>();
+        final long[] previousIds = new long[devices.length];
+        final boolean[] previouslyDisplayed = new boolean[devices.length];
+        for (int round = 0; round < ROUNDS; round++) {
+            final List<Announce> displayed = new ArrayList<>();
+            final boolean[] isDisplayed = new boolean[devices.length];
+            for (int i = 0; i < devices.length; i++) {
+                isDisplayed[i] = random.nextInt(4) != 0;
+                if (isDisplayed[i]) {
+                    displayed.add(devices[i]);
+                } else if (previouslyDisplayed[i]) {
+                    released.add(previousIds[i]);
+                }
+            }
+            registry.retain(displayed, displayed);
+            assertTrue(registry.size() <= displayed.size());
+
+            for (int i = 0; i < devices.length; i++) {
+                if (!isDisplayed[i]) {
+                    continue;
+                }
+                final long id = registry.getId(devices[i]);
+                if (previouslyDisplayed[i]) {
+                    assertEquals(previousIds[i], id);
+                }
+                assertFalse(released.contains(id));
+                previousIds[i] = id;
+            }
+            System.arraycopy(isDisplayed, 0, previouslyDisplayed, 0, devices.length);
+            assertEquals(displayed.size(), registry.size());
+        }
+    }
+}
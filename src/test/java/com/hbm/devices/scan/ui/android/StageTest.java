@@ -0,0 +1,99 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StageTest {
+
+    private static final int CAPACITY = 4;
+
+    @Test
+    public void testOfferDropsWhenFull() {
+        final Stage<Integer> stage = new Stage<>("test", CAPACITY, item -> { });
+        for (int i = 0; i < CAPACITY; i++) {
+            assertTrue(stage.offer(i));
+        }
+        assertFalse(stage.offer(CAPACITY));
+        assertEquals(1, stage.getMetrics().getDropped());
+        assertEquals(CAPACITY, stage.getMetrics().getMaxDepth());
+    }
+
+    @Test
+    public void testItemsHandledInOrder() throws InterruptedException {
+        final List<Integer> handled = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(CAPACITY);
+        final Stage<Integer> stage = new Stage<>("test", CAPACITY, item -> {
+            handled.add(item);
+            done.countDown();
+        });
+        for (int i = 0; i < CAPACITY; i++) {
+            stage.offer(i);
+        }
+        final Thread worker = new Thread(stage);
+        worker.start();
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        worker.interrupt();
+        worker.join(1000);
+
+        assertFalse(worker.isAlive());
+        assertEquals(Arrays.asList(0, 1, 2, 3), handled);
+        assertEquals(CAPACITY, stage.getMetrics().getProcessed());
+        assertEquals(0, stage.getMetrics().getDepth());
+    }
+
+    @Test
+    public void testQueuedItemsDiscardedOnShutdown() {
+        final List<Integer> handled = new ArrayList<>();
+        final List<Integer> discarded = new ArrayList<>();
+        final Stage<Integer> stage = new Stage<>("test", CAPACITY, handled::add, discarded::add);
+        stage.offer(1);
+        stage.offer(2);
+
+        Thread.currentThread().interrupt();
+        try {
+            stage.run();
+        } finally {
+            Thread.interrupted();
+        }
+
+        assertTrue(handled.isEmpty());
+        assertEquals(Arrays.asList(1, 2), discarded);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Android Scan, an app for scanning and configuring HBM devices.
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) Stephan Gatzka
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hbm.devices.scan.ui.android;
+
+import com.hbm.devices.scan.announce.Announce;
+import com.hbm.devices.scan.announce.AnnounceDeserializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.Properties;
+
+/**
+ * Creates announces for tests from the template devices in devices.properties.
+ */
+final class TestAnnounces implements Observer {
+
+    private static final String TEMPLATE;
+    private static final String TEMPLATE_UUID = "0009E500123A";
+
+    private final AnnounceDeserializer parser;
+    private Announce parsed;
+
+    TestAnnounces() {
+        parser = new AnnounceDeserializer();
+        parser.addObserver(this);
+    }
+
+    Announce parse(String json) {
+        parsed = null;
+        parser.update(null, json);
+        return parsed;
+    }
+
+    Announce create(int id) {
+        return create(uuid(id));
+    }
+
+    Announce create(String uuid) {
+        return parse(TEMPLATE.replace(TEMPLATE_UUID, uuid));
+    }
+
+    Announce create(int id, String firmwareVersion) {
+        return parse(TEMPLATE.replace(TEMPLATE_UUID, uuid(id)).replace("4.1.1.18610.1", firmwareVersion));
+    }
+
+    Announce create(int id, String name, String type) {
+        return parse(TEMPLATE.replace(TEMPLATE_UUID, uuid(id))
+                .replace("\"name\":\"MX410 Matthias\",\"type\":\"MX410\"",
+                        "\"name\":\"" + name + "\",\"type\":\"" + type + "\""));
+    }
+
+    Announce createRouter(int id) {
+        return parse(TEMPLATE.replace(TEMPLATE_UUID, uuid(id))
+                .replace("\"hardwareId\":", "\"isRouter\":true,\"hardwareId\":"));
+    }
+
+    static String uuid(int id) {
+        return String.format(Locale.US, "0009E5%06X", id);
+    }
+
+    @Override
+    public void update(Observable o, Object arg) {
+        parsed = (Announce) arg;
+    }
+
+    static {
+        try (final InputStream is = TestAnnounces.class.getResourceAsStream("/devices.properties")) {
+            final Properties props = new Properties();
+            props.load(is);
+            TEMPLATE = props.getProperty("scan.announce.device1");
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}